@@ -3,8 +3,8 @@
  * Стиль Цоя и "Кино" - Минимализм и простота
  */
 
-// Для разработки используем mock данные (позже заменить на реальный API)
-const USE_MOCK = true;
+// Бэкенд: java server.ShopServer (порт 8080). true — работать на mock данных без сервера
+const USE_MOCK = false;
 const API_BASE = USE_MOCK ? '' : 'http://localhost:8080/api';
 
 class ShopAPI {
@@ -170,6 +170,74 @@ class ShopAPI {
     }
   }
 
+  /**
+   * Получить страницу товаров: { items, nextCursor }.
+   * nextCursor передаётся в следующий вызов; null — товаров больше нет.
+   * filters — фильтры сервера: { category, stockStatus, type, minPrice, maxPrice }
+   */
+  static async getProductsPage(cursor = null, limit = 50, filters = {}) {
+    if (USE_MOCK) {
+      const products = this.getMockProducts()
+        .filter(p => !filters.category || p.category === filters.category);
+      const start = cursor ? Number(cursor) : 0;
+      const end = start + limit;
+      return {
+        items: products.slice(start, end),
+        nextCursor: end < products.length ? String(end) : null
+      };
+    }
+
+    try {
+      const params = new URLSearchParams({ ...filters, limit: String(limit) });
+      if (cursor) params.set('cursor', cursor);
+      const response = await fetch(`${API_BASE}/products?${params}`);
+      if (!response.ok) throw new Error('Failed to fetch products');
+      return await response.json();
+    } catch (error) {
+      console.error('Error fetching products page:', error);
+      throw error;
+    }
+  }
+
+  /**
+   * Поиск товаров на сервере: все слова запроса, последнее — как начало слова
+   */
+  static async searchProducts(query, limit = 100) {
+    if (USE_MOCK) {
+      const q = query.toLowerCase();
+      return this.getMockProducts().filter(p => p.name.toLowerCase().includes(q)).slice(0, limit);
+    }
+
+    try {
+      const params = new URLSearchParams({ q: query, limit: String(limit) });
+      const response = await fetch(`${API_BASE}/search?${params}`);
+      if (!response.ok) throw new Error('Search failed');
+      return await response.json();
+    } catch (error) {
+      console.error('Error searching products:', error);
+      throw error;
+    }
+  }
+
+  /**
+   * Подсказки для поиска: слова, начинающиеся с последнего слова запроса
+   */
+  static async suggest(query, limit = 10) {
+    if (USE_MOCK) {
+      return [];
+    }
+
+    try {
+      const params = new URLSearchParams({ q: query, limit: String(limit) });
+      const response = await fetch(`${API_BASE}/search/suggest?${params}`);
+      if (!response.ok) throw new Error('Suggest failed');
+      return await response.json();
+    } catch (error) {
+      console.error('Error fetching suggestions:', error);
+      return [];
+    }
+  }
+
   /**
    * Получить один товар по ID
    */
@@ -284,7 +352,7 @@ class ShopAPI {
   }
 
   /**
-   * Рассчитать цену с промо
+   * Рассчитать цену с промо (только для USE_MOCK — на сервере считают Java-политики)
    */
   static calculatePriceWithPromotion(basePrice, quantity, promotion) {
     if (!promotion || promotion.id === 'none') {
@@ -341,7 +409,7 @@ class ShopAPI {
   }
 
   /**
-   * Рассчитать налог
+   * Рассчитать налог (только для USE_MOCK)
    * Прогрессивная шкала (автоматически):
    * - До 10,000₽ → 5%
    * - До 50,000₽ → 10%
@@ -394,7 +462,7 @@ class ShopAPI {
   }
 
   /**
-   * Рассчитать доставку
+   * Рассчитать доставку (только для USE_MOCK)
    */
   static calculateShipping(subtotal, shippingPolicy) {
     if (!shippingPolicy || shippingPolicy.id === 'none') {
@@ -411,14 +479,69 @@ class ShopAPI {
   // ========== CART CHECKOUT ==========
 
   /**
-   * Оформить заказ (расчёт итоговой цены)
+   * Рассчитать заказ (итоговая цена) — считает сервер, одним запросом.
+   * promotionId 'best' — сервер сам выберет промо с максимальной скидкой.
    */
   static async checkout(cartItems, promotionId, taxPolicyId, shippingPolicyId) {
+    if (USE_MOCK) {
+      return this.mockCheckout(cartItems, promotionId, taxPolicyId, shippingPolicyId);
+    }
+    return this.postCheckout('/checkout/quote', cartItems, promotionId, taxPolicyId, shippingPolicyId);
+  }
+
+  /**
+   * Оформить заказ: сервер пересчитывает цены и списывает товар со склада (всё или ничего).
+   * Если товара не хватает — ошибка со status 409 и productIds.
+   */
+  static async placeOrder(cartItems, promotionId, taxPolicyId, shippingPolicyId) {
+    if (USE_MOCK) {
+      const order = await this.mockCheckout(cartItems, promotionId, taxPolicyId, shippingPolicyId);
+      return { ...order, status: 'PLACED' };
+    }
+    return this.postCheckout('/checkout', cartItems, promotionId, taxPolicyId, shippingPolicyId);
+  }
+
+  static async postCheckout(path, cartItems, promotionId, taxPolicyId, shippingPolicyId) {
+    const response = await fetch(`${API_BASE}${path}`, {
+      method: 'POST',
+      headers: { 'Content-Type': 'application/json' },
+      body: JSON.stringify({
+        items: cartItems.map(item => ({ productId: item.productId, quantity: item.quantity })),
+        promotionId,
+        taxPolicyId,
+        shippingPolicyId
+      })
+    });
+    const data = await response.json();
+    if (!response.ok) {
+      const error = new Error(data.error || 'Checkout failed');
+      error.status = response.status;
+      error.productIds = data.productIds || [];
+      throw error;
+    }
+    return data;
+  }
+
+  /**
+   * Расчёт заказа в браузере — только для USE_MOCK (без сервера)
+   */
+  static async mockCheckout(cartItems, promotionId, taxPolicyId, shippingPolicyId) {
     // Получаем политики
     const promotions = await this.getPromotions();
     const taxes = await this.getTaxPolicies();
     const shipping = await this.getShippingPolicies();
 
+    if (promotionId === 'best') {
+      let best = null;
+      for (const promo of promotions) {
+        const quote = await this.mockCheckout(cartItems, promo.id, taxPolicyId, shippingPolicyId);
+        if (!best || quote.discountAmount > best.discountAmount) {
+          best = quote;
+        }
+      }
+      return best;
+    }
+
     const promotion = promotions.find(p => p.id === promotionId);
     const taxPolicy = taxes.find(t => t.id === taxPolicyId);
     const shippingPolicy = shipping.find(s => s.id === shippingPolicyId);
@@ -465,6 +588,7 @@ class ShopAPI {
       itemsTotal,
       subtotal,
       discountAmount,
+      promotionId: promotion ? promotion.id : 'none',
       promotion: promotion ? promotion.name : 'Нет',
       taxAmount,
       taxPolicy: taxPolicy ? taxPolicy.name : 'Нет',
@@ -225,34 +225,16 @@ async function calculateTotal() {
   }
 
   try {
-    // Автоматически найти лучшую промо (которая даёт максимальную скидку)
-    let bestPromotion = promotions[0]; // дефолт "Без скидки"
-    let maxDiscount = 0;
-
-    // Перебрать все промо и выбрать ту, что даёт наибольшую экономию
-    for (const promo of promotions) {
-      const testCheckout = await ShopAPI.checkout(
-        cart,
-        promo.id,
-        selectedTax.id,
-        selectedShipping.id
-      );
-      if (testCheckout.discountAmount > maxDiscount) {
-        maxDiscount = testCheckout.discountAmount;
-        bestPromotion = promo;
-      }
-    }
-
-    selectedPromotion = bestPromotion;
-
-    // Финальный расчёт с лучшей промо
+    // Сервер сам находит лучшую промо (максимальная скидка) и считает всё одним запросом
     const checkout = await ShopAPI.checkout(
       cart,
-      selectedPromotion.id,
+      'best',
       selectedTax.id,
       selectedShipping.id
     );
 
+    selectedPromotion = promotions.find(p => p.id === checkout.promotionId) || promotions[0];
+
     // Обновить инфо о промо
     const promoInfo = document.getElementById('promo-info');
     if (selectedPromotion.id === 'none') {
@@ -531,12 +513,29 @@ function initEventListeners() {
   });
 
   // Checkout button
-  document.getElementById('checkout-btn').addEventListener('click', () => {
+  document.getElementById('checkout-btn').addEventListener('click', async () => {
     if (cart.length === 0) {
       alert('Корзина пуста!');
       return;
     }
 
+    // Сервер пересчитывает заказ и списывает товар со склада
+    try {
+      await ShopAPI.placeOrder(
+        cart,
+        selectedPromotion ? selectedPromotion.id : 'best',
+        selectedTax.id,
+        selectedShipping.id
+      );
+    } catch (error) {
+      if (error.status === 409) {
+        alert('Не хватает товара на складе. Уменьшите количество и попробуйте снова.');
+      } else {
+        alert('Не удалось оформить заказ. Попробуйте позже.');
+      }
+      return;
+    }
+
     // Показать трекинг
     showPigeonTracking();
 
@@ -8,6 +8,12 @@ let filteredProducts = [];
 let currentCategory = 'all';
 let currentSort = 'name-asc';
 let searchQuery = '';
+let searchResults = []; // товары, найденные сервером по searchQuery
+let searchTimer = null;
+let nextCursor = null; // курсор следующей страницы, null — всё загружено
+
+const PAGE_SIZE = 50;
+const SEARCH_DELAY_MS = 200;
 
 // ========== INIT ==========
 
@@ -34,11 +40,14 @@ async function loadProducts() {
     productGrid.innerHTML = '';
     noProducts.classList.add('hidden');
 
-    allProducts = await ShopAPI.getProducts();
+    const page = await ShopAPI.getProductsPage(null, PAGE_SIZE, listFilters());
+    allProducts = page.items;
+    nextCursor = page.nextCursor;
     filteredProducts = [...allProducts];
 
     applyFilters();
     renderProducts();
+    updateLoadMore();
 
     loader.classList.add('hidden');
   } catch (error) {
@@ -48,10 +57,73 @@ async function loadProducts() {
   }
 }
 
+// Догрузить следующую страницу; фильтры и сортировка применяются ко всем загруженным товарам
+async function loadMoreProducts() {
+  if (!nextCursor) return;
+  const button = document.getElementById('load-more');
+  button.disabled = true;
+
+  try {
+    const page = await ShopAPI.getProductsPage(nextCursor, PAGE_SIZE, listFilters());
+    allProducts = allProducts.concat(page.items);
+    nextCursor = page.nextCursor;
+
+    applyFilters();
+    renderProducts();
+  } catch (error) {
+    console.error('Error loading more products:', error);
+    alert('Ошибка загрузки товаров. Проверьте соединение.');
+  } finally {
+    button.disabled = false;
+    updateLoadMore();
+  }
+}
+
+// Категория фильтруется на сервере, чтобы страницы были уже отфильтрованы
+function listFilters() {
+  return currentCategory !== 'all' ? { category: currentCategory } : {};
+}
+
+function updateLoadMore() {
+  document.getElementById('load-more').classList.toggle('hidden', !nextCursor || !!searchQuery);
+}
+
+// ========== SEARCH ==========
+
+async function runSearch(query) {
+  try {
+    const [results, suggestions] = await Promise.all([
+      ShopAPI.searchProducts(query),
+      ShopAPI.suggest(query)
+    ]);
+    if (query !== searchQuery) return; // пока ждали ответа, запрос уже поменялся
+    searchResults = results;
+    renderSuggestions(query, suggestions);
+    applyFilters();
+    renderProducts();
+  } catch (error) {
+    console.error('Error searching:', error);
+  }
+}
+
+// Подсказка заменяет последнее слово запроса
+function renderSuggestions(query, words) {
+  const list = document.getElementById('search-suggestions');
+  const head = query.replace(/[^\s]*$/, '');
+  // Значения задаются через .value: в запросе может быть что угодно, в том числе кавычки и разметка
+  list.replaceChildren(...words.map(word => {
+    const option = document.createElement('option');
+    option.value = head + word;
+    return option;
+  }));
+}
+
 // ========== FILTERS & SORT ==========
 
 function applyFilters() {
-  filteredProducts = allProducts.filter(product => {
+  // При поиске показываем то, что нашёл сервер, иначе — загруженные страницы каталога
+  const source = searchQuery ? searchResults : allProducts;
+  filteredProducts = source.filter(product => {
     // Фильтр по категории
     if (currentCategory !== 'all') {
       // Если выбрана конкретная категория, товары без категории (null) не показываем
@@ -61,11 +133,6 @@ function applyFilters() {
     }
     // Если категория "all", показываем всё включая товары с category: null
 
-    // Поиск по названию
-    if (searchQuery && !product.name.toLowerCase().includes(searchQuery.toLowerCase())) {
-      return false;
-    }
-
     return true;
   });
 
@@ -161,7 +228,8 @@ function addToCart(productId) {
   if (existingItem) {
     existingItem.quantity += 1;
   } else {
-    const product = allProducts.find(p => p.id === productId);
+    const product = allProducts.find(p => p.id === productId)
+      || searchResults.find(p => p.id === productId);
     if (product) {
       cart.push({
         productId: product.id,
@@ -231,19 +299,30 @@ function initEventListeners() {
       // Добавить active к текущей
       e.target.classList.add('active');
 
-      // Применить фильтр
+      // Применить фильтр: результаты поиска фильтруем здесь, каталог — перезагружаем с сервера
       currentCategory = e.target.dataset.category;
-      applyFilters();
-      renderProducts();
+      if (searchQuery) {
+        applyFilters();
+        renderProducts();
+      } else {
+        loadProducts();
+      }
     });
   });
 
   // Поиск
   const searchInput = document.getElementById('search-input');
   searchInput.addEventListener('input', (e) => {
-    searchQuery = e.target.value;
-    applyFilters();
-    renderProducts();
+    searchQuery = e.target.value.trim() ? e.target.value : '';
+    clearTimeout(searchTimer);
+    updateLoadMore();
+    if (!searchQuery) {
+      // Категорию могли сменить во время поиска — каталог грузим заново
+      searchResults = [];
+      loadProducts();
+      return;
+    }
+    searchTimer = setTimeout(() => runSearch(searchQuery), SEARCH_DELAY_MS);
   });
 
   // Сортировка
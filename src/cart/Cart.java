@@ -0,0 +1,330 @@
+package cart;
+
+import product.Product;
+import product.pricing.BatchPricer;
+import product.pricing.PolicySet;
+import product.pricing.PricePolicy;
+import product.pricing.PriceQuoteCache;
+import product.shipping.ConsolidatedShippingEngine;
+import product.shipping.ShippingPolicy;
+import product.tax.TaxPolicy;
+import product.tax.TaxResolver;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shopping cart with a single-pass pricing pipeline:
+ * best promotion -> tax on the discounted subtotal -> shipping.
+ * Line taxes go through a TaxResolver for the cart's tax policy. With a
+ * PolicySet and a PriceQuoteCache (see setPromotions) line prices are
+ * looked up in the shared cache instead of recomputed.
+ *
+ * The line-by-line breakdown is kept in parallel primitive arrays, so pricing
+ * a cart allocates nothing per line. Totals are running sums: changing one
+ * line's quantity recomputes only that line and applies the difference.
+ * Shipping is quoted for the cart as a whole (see quoteConsolidatedShipping),
+ * the same way checkout charges it, when first asked for after a change.
+ *
+ * Each product has at most one line. Removing a line moves the last line
+ * into its place, so line indexes are only stable until the next removal.
+ */
+public class Cart {
+    private static final int INITIAL_CAPACITY = 8;
+
+    private Product[] products = new Product[INITIAL_CAPACITY];
+    private int[] quantities = new int[INITIAL_CAPACITY];
+    private double[] baseTotals = new double[INITIAL_CAPACITY]; // price * qty, before promotions
+    private double[] subtotals = new double[INITIAL_CAPACITY];  // after the best promotion
+    private double[] taxes = new double[INITIAL_CAPACITY];
+    private final Map<Product, Integer> lineOf = new IdentityHashMap<>();
+    private int size;
+
+    private List<PricePolicy> promotions;
+    private BatchPricer pricer;
+    private PolicySet policySet;  // with 'quotes', or both null
+    private PriceQuoteCache quotes;
+    private TaxPolicy taxPolicy;
+    private TaxResolver taxResolver;
+
+    private ConsolidatedShippingEngine shippingEngine;
+
+    private double baseTotal;
+    private double subtotal;
+    private double taxTotal;
+    private double shippingTotal;
+    private boolean shippingStale; // lines changed since shippingTotal was quoted
+
+    /**
+     * @param promotions rules to choose the best price from (may be empty)
+     * @param taxPolicy tax applied to each line's discounted subtotal (null for none)
+     */
+    public Cart(List<PricePolicy> promotions, TaxPolicy taxPolicy) {
+        this(promotions, taxPolicy, resolverFor(taxPolicy));
+    }
+
+    /**
+     * Like Cart(promotions, taxPolicy), sharing a resolver already built for
+     * taxPolicy (see ShopCatalog.findTaxResolver), so its table stays warm
+     * across carts.
+     */
+    public Cart(List<PricePolicy> promotions, TaxPolicy taxPolicy, TaxResolver taxResolver) {
+        this.promotions = promotions == null ? List.of() : promotions;
+        this.pricer = new BatchPricer(this.promotions);
+        this.taxPolicy = taxPolicy;
+        this.taxResolver = taxResolver;
+    }
+
+    private static TaxResolver resolverFor(TaxPolicy taxPolicy) {
+        return new TaxResolver(taxPolicy == null ? List.of() : List.of(taxPolicy));
+    }
+
+    /**
+     * Adds units of a product. If the product already has a line, its quantity grows.
+     * @return the line index, or -1 if the product is null or qty is not positive
+     */
+    public int add(Product product, int qty) {
+        if (product == null || qty <= 0) {
+            return -1;
+        }
+        Integer existing = lineOf.get(product);
+        if (existing != null) {
+            setQuantity(existing, quantities[existing] + qty);
+            return existing;
+        }
+        ensureCapacity(size + 1);
+        int line = size++;
+        products[line] = product;
+        quantities[line] = qty;
+        lineOf.put(product, line);
+        priceLine(line);
+        addToTotals(line, 1);
+        return line;
+    }
+
+    /**
+     * Changes one line's quantity and re-prices only that line.
+     * A quantity of 0 or less removes the line.
+     */
+    public void setQuantity(int line, int qty) {
+        checkLine(line);
+        if (qty <= 0) {
+            removeLine(line);
+            return;
+        }
+        addToTotals(line, -1);
+        quantities[line] = qty;
+        priceLine(line);
+        addToTotals(line, 1);
+    }
+
+    public void removeLine(int line) {
+        checkLine(line);
+        addToTotals(line, -1);
+        lineOf.remove(products[line]);
+        int last = --size;
+        if (line != last) {
+            products[line] = products[last];
+            quantities[line] = quantities[last];
+            baseTotals[line] = baseTotals[last];
+            subtotals[line] = subtotals[last];
+            taxes[line] = taxes[last];
+            lineOf.put(products[line], line);
+        }
+        products[last] = null;
+    }
+
+    public boolean remove(Product product) {
+        Integer line = lineOf.get(product);
+        if (line == null) {
+            return false;
+        }
+        removeLine(line);
+        return true;
+    }
+
+    public void clear() {
+        Arrays.fill(products, 0, size, null);
+        lineOf.clear();
+        size = 0;
+        baseTotal = subtotal = taxTotal = shippingTotal = 0.0;
+        shippingStale = false;
+    }
+
+    public void setPromotions(List<PricePolicy> promotions) {
+        this.promotions = promotions == null ? List.of() : promotions;
+        this.pricer = new BatchPricer(this.promotions);
+        this.policySet = null;
+        this.quotes = null;
+        reprice();
+    }
+
+    /**
+     * Prices lines against 'promotions' through 'quotes', so carts that share
+     * the cache reuse each other's line prices. Quotes go stale by themselves
+     * when a product's price or the set changes (see PriceQuoteCache).
+     */
+    public void setPromotions(PolicySet promotions, PriceQuoteCache quotes) {
+        this.promotions = promotions.asList();
+        this.pricer = new BatchPricer(this.promotions);
+        this.policySet = promotions;
+        this.quotes = quotes;
+        reprice();
+    }
+
+    public void setTaxPolicy(TaxPolicy taxPolicy) {
+        this.taxPolicy = taxPolicy;
+        this.taxResolver = resolverFor(taxPolicy);
+        reprice();
+    }
+
+    /**
+     * Re-prices every line in one pass, e.g. after product prices changed.
+     * Also resets any floating-point drift in the running totals.
+     */
+    public void reprice() {
+        if (quotes == null) {
+            pricer.priceDistinct(products, quantities, subtotals, size); // one line per product
+        } else {
+            for (int line = 0; line < size; line++) {
+                subtotals[line] = quotes.quote(products[line], quantities[line], policySet);
+            }
+        }
+        taxResolver.calculateTax(products, subtotals, taxes, size);
+        baseTotal = subtotal = taxTotal = 0.0;
+        shippingStale = true;
+        for (int line = 0; line < size; line++) {
+            baseTotals[line] = products[line].finalPrice(quantities[line]);
+            addToTotals(line, 1);
+        }
+    }
+
+    /**
+     * Quotes shipping for the cart as a whole: lines are grouped by policy and
+     * each group ships as one consolidated parcel.
+     * @param override if not null, all physical lines ship with this policy
+     * @return the engine, holding the total and the per-shipment breakdown
+     */
+    public ConsolidatedShippingEngine quoteConsolidatedShipping(ShippingPolicy override) {
+        if (shippingEngine == null) {
+            shippingEngine = new ConsolidatedShippingEngine();
+        }
+        shippingEngine.quote(products, quantities, subtotals, size, override);
+        return shippingEngine;
+    }
+
+    /**
+     * Takes every line's quantity out of stock, all or nothing (see Product.trySellAll).
+     * @return false if some product is short, in which case no stock changed
+     */
+    public boolean trySellAll() {
+        if (size == 0) {
+            return false;
+        }
+        return Product.trySellAll(Arrays.copyOf(products, size), Arrays.copyOf(quantities, size));
+    }
+
+    /**
+     * Puts back what a successful trySellAll() took, e.g. when the order
+     * could not be confirmed. The lines must not have changed in between.
+     */
+    public void restockAll() {
+        Product.restockAll(Arrays.copyOf(products, size), Arrays.copyOf(quantities, size));
+    }
+
+    private void priceLine(int line) {
+        Product p = products[line];
+        int qty = quantities[line];
+        baseTotals[line] = p.finalPrice(qty);
+        subtotals[line] = quotes == null ? pricer.price(p, qty) : quotes.quote(p, qty, policySet);
+        taxes[line] = taxResolver.calculateTax(p, subtotals[line]);
+    }
+
+    private void addToTotals(int line, int sign) {
+        baseTotal += sign * baseTotals[line];
+        subtotal += sign * subtotals[line];
+        taxTotal += sign * taxes[line];
+        shippingStale = true;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= products.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, products.length * 2);
+        products = Arrays.copyOf(products, newCapacity);
+        quantities = Arrays.copyOf(quantities, newCapacity);
+        baseTotals = Arrays.copyOf(baseTotals, newCapacity);
+        subtotals = Arrays.copyOf(subtotals, newCapacity);
+        taxes = Arrays.copyOf(taxes, newCapacity);
+    }
+
+    private void checkLine(int line) {
+        if (line < 0 || line >= size) {
+            throw new IndexOutOfBoundsException("Line " + line + " out of range for cart of size " + size);
+        }
+    }
+
+    // ----- breakdown -----
+
+    public int size() { return size; }
+
+    public boolean isEmpty() { return size == 0; }
+
+    /**
+     * @return the line index of a product, or -1 if it is not in the cart
+     */
+    public int lineOf(Product product) {
+        Integer line = lineOf.get(product);
+        return line == null ? -1 : line;
+    }
+
+    public Product getProduct(int line) { checkLine(line); return products[line]; }
+
+    public int getQuantity(int line) { checkLine(line); return quantities[line]; }
+
+    public double getLineBaseTotal(int line) { checkLine(line); return baseTotals[line]; }
+
+    public double getLineSubtotal(int line) { checkLine(line); return subtotals[line]; }
+
+    public double getLineDiscount(int line) { checkLine(line); return baseTotals[line] - subtotals[line]; }
+
+    public double getLineTax(int line) { checkLine(line); return taxes[line]; }
+
+    /**
+     * @return the line's subtotal plus tax; shipping is charged per shipment, not per line
+     */
+    public double getLineTotal(int line) {
+        checkLine(line);
+        return subtotals[line] + taxes[line];
+    }
+
+    public double getBaseTotal() { return baseTotal; }
+
+    public double getSubtotal() { return subtotal; }
+
+    public double getDiscountTotal() { return baseTotal - subtotal; }
+
+    public double getTaxTotal() { return taxTotal; }
+
+    /**
+     * @return the consolidated shipping cost of the cart, with every physical
+     *         line shipping under its own policy
+     * @throws IllegalStateException if a physical line has no shipping policy
+     */
+    public double getShippingTotal() {
+        if (shippingStale) {
+            shippingTotal = quoteConsolidatedShipping(null).getTotal();
+            shippingStale = false;
+        }
+        return shippingTotal;
+    }
+
+    public double getTotal() { return subtotal + taxTotal + getShippingTotal(); }
+
+    public List<PricePolicy> getPromotions() { return promotions; }
+
+    public TaxPolicy getTaxPolicy() { return taxPolicy; }
+}
@@ -1,49 +1,147 @@
 package category;
 
 import product.Product;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.function.BooleanSupplier;
 
+/**
+ * A group of products with a running total of their stock value.
+ * A product is listed exactly while its category is this one: addProduct(),
+ * removeProduct() and Product.trySetCategory() all move it through Product,
+ * which updates the list and the total together under the product's lock.
+ * The list itself is guarded by the category's own lock.
+ *
+ * A category restored from a catalog snapshot lists each of its products
+ * once that product is built (see ProductRegistry), so getProductCount() and
+ * displayCategoryInfo() are complete only after every restored product has
+ * been built; ShopCatalog.fromSnapshot() builds them all in the background.
+ */
 public class Category {
+    private static final AtomicInteger ORDINALS = new AtomicInteger();
+
+    private final int ordinal; // dense index used by the product store
     private int id;
     private String name;
     private String description;
-    private List<Product> products;
+    private Set<Product> products; // hashed membership, keeps insertion order
+    private final DoubleAdder totalValue = new DoubleAdder(); // running sum of price * quantity
 
     public Category(int id, String name, String description) {
         this.id = id;
         this.name = name;
         this.description = description;
-        this.products = new ArrayList<>();
+        this.products = new LinkedHashSet<>();
+        this.ordinal = ORDINALS.getAndIncrement();
+    }
+
+    /**
+     * @return the number of categories created so far (ordinals are 0..count-1)
+     */
+    public static int getCount() {
+        return ORDINALS.get();
     }
 
+    /**
+     * Moves the product here from whatever category it is in.
+     * @return false if the product is null or already in this category
+     */
     public boolean addProduct(Product product) {
         if (product == null) {
             return false;
         }
-        if (products.contains(product)) {
+        while (true) {
+            Category current = product.getCategory();
+            if (current == this) {
+                return false;
+            }
+            if (product.tryMoveCategory(current, this)) {
+                return true;
+            }
+            // moved by another thread meanwhile; try again from where it is now
+        }
+    }
+
+    /**
+     * Lists a product that is already filed under this category, e.g. one
+     * restored from a snapshot: its value is already in the total and no
+     * events are fired. 'publish' makes the product visible to other threads
+     * and runs under this category's lock, so contains() is true for the
+     * product as soon as it can be seen.
+     * @return the result of 'publish'; the product is listed only if it is true
+     */
+    public synchronized boolean restoreProduct(Product product, BooleanSupplier publish) {
+        if (!publish.getAsBoolean()) {
             return false;
         }
-        products.add(product);
-        product.trySetCategory(this);
+        if (product.getCategory() == this) {
+            products.add(product);
+        }
         return true;
     }
 
     public void removeProduct(Product product) {
-        if (products.remove(product)) {
-            product.trySetCategory(null);
+        if (product != null) {
+            product.tryMoveCategory(this, null);
         }
     }
 
+    /**
+     * Called by Product, under its lock, when a product joins this category:
+     * lists it and adds its stock value to the total. Use addProduct() or
+     * Product.trySetCategory() to move a product.
+     */
+    public synchronized void productAdded(Product product, double value) {
+        products.add(product);
+        totalValue.add(value);
+    }
+
+    /**
+     * Called by Product, under its lock, when a product leaves this category.
+     */
+    public synchronized void productRemoved(Product product, double value) {
+        products.remove(product);
+        totalValue.add(-value);
+    }
+
+    /**
+     * Total stock value (price * quantity) of the products whose category is this one.
+     * Maintained incrementally as products change price or stock, so this is O(1).
+     */
     public double getTotalValue() {
-        double total = 0;
-        for (Product p : products) {
-            total += p.calculateTotalValue();
-        }
-        return total;
+        return totalValue.sum();
     }
 
-    public void displayCategoryInfo() {
+    /**
+     * Called by Product whenever the stock value of one of this category's
+     * products changes (price, quantity, or the product joining/leaving).
+     */
+    public void productValueChanged(double delta) {
+        totalValue.add(delta);
+    }
+
+    /**
+     * Rebuilds the running total from the product store, dropping any
+     * floating-point drift accumulated by incremental updates.
+     */
+    public double recomputeTotalValue() {
+        double exact = Product.store().totalValue(ordinal);
+        totalValue.reset();
+        totalValue.add(exact);
+        return exact;
+    }
+
+    public synchronized boolean contains(Product product) {
+        return products.contains(product);
+    }
+
+    public synchronized int getProductCount() {
+        return products.size();
+    }
+
+    public synchronized void displayCategoryInfo() {
         System.out.println("Category Info:");
         System.out.println("ID: " + id);
         System.out.println("Name: " + name);
@@ -56,7 +154,19 @@ public class Category {
         System.out.println();
     }
 
+    public int getId() {
+        return id;
+    }
+
     public String getName() {
         return name;
     }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public int getOrdinal() {
+        return ordinal;
+    }
 }
@@ -0,0 +1,794 @@
+package product;
+
+import category.Category;
+import product.shipping.ShippingPolicy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary snapshot of the whole catalog: every product with its category and
+ * shipping policy, so a restart does not have to run the constructors and
+ * their validation again for every product.
+ *
+ * load() memory-maps the file, checks it against the checksums in its header
+ * and copies the numeric columns straight into the ProductStore, so prices,
+ * stock and the aggregates are there at once.
+ * Product objects are built only when first looked up or listed, from their
+ * record in the mapped file (see ProductRegistry). Lookups by id go through
+ * a hash table in the file, so nothing has to be read per product at load.
+ * Products keep their sequence numbers, so cursors stay valid across a restart.
+ * The snapshot also records how far the mutation log had got when it was
+ * written, so only the changes after that are replayed onto it.
+ *
+ * File layout (little-endian):
+ *   header (96 bytes):
+ *     int  magic ('CSNP')
+ *     int  format version (2)
+ *     int  rows: the highest sequence number saved (rows of missing numbers stay empty)
+ *     int  product count
+ *     int  category count
+ *     int  shipping policy count
+ *     int  id table slots (a power of two)
+ *     int  0
+ *     long record area offset
+ *     long record area length
+ *     long columns offset
+ *     long id table offset
+ *     long mutation log id (0: none)
+ *     long mutation log offset: the changes before it are in the snapshot
+ *     int  CRC32C of the categories and shipping policies (header end to record area offset)
+ *     int  CRC32C of the records (record area offset to columns offset)
+ *     int  CRC32C of the columns (columns offset to id table offset)
+ *     int  CRC32C of the id table (id table offset to the end of the file)
+ *   categories:       int id, string name, string description
+ *   shipping policies: string id
+ *   records, one per product: string id, name, description, extra; then
+ *     PhysicalProduct: int shipping policy index (-1: none), double length, width, height (cm)
+ *     DigitalProduct:  double download size (MB), string license key
+ *     No record crosses a 1 GiB boundary of the area, which is mapped in 1 GiB segments.
+ *   columns, one value per row in this order:
+ *     long record offset in the area (-1: empty row), double price, long price in minor units,
+ *     double weight (kg), int quantity, int category index (-1: none), byte kind (ProductStore.KIND_*)
+ *   id table: int[slots], row + 1 of the product whose id hashes there (linear probing), 0 if free
+ *   string: int byte length (-1: null), then the UTF-8 bytes
+ *
+ * Products are restored as Product, PhysicalProduct or DigitalProduct.
+ * "extra" is one free-form string per product for the caller, e.g. the image
+ * the web catalog shows for it.
+ */
+public final class CatalogSnapshot {
+    private static final int MAGIC = 0x504E5343; // "CSNP" read as little-endian
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 96;
+    private static final int CHECKSUMS_AT = 80;
+    private static final String[] SECTIONS = {"categories", "records", "columns", "id table"};
+    private static final int SEGMENT_BITS = 30;
+    private static final long SEGMENT_BYTES = 1L << SEGMENT_BITS;
+    private static final int MAX_RECORD_BYTES = 1 << 20;
+    private static final int COLUMN_BYTES_PER_ROW = 8 + 8 + 8 + 8 + 4 + 4 + 1;
+
+    private final int rows;
+    private final int productCount;
+    private final List<Category> categories;
+    private final ShippingPolicy[] shippingPolicies;
+    private final ByteBuffer[] records;
+    private final ByteBuffer columns; // only absolute reads, safe to share between threads
+    private final int idTableSlots;
+    private final long logId;
+    private final long logOffset;
+
+    private CatalogSnapshot(int rows, int productCount, List<Category> categories, ShippingPolicy[] shippingPolicies,
+                            ByteBuffer[] records, ByteBuffer columns, int idTableSlots, long logId, long logOffset) {
+        this.rows = rows;
+        this.productCount = productCount;
+        this.categories = categories;
+        this.shippingPolicies = shippingPolicies;
+        this.records = records;
+        this.columns = columns;
+        this.idTableSlots = idTableSlots;
+        this.logId = logId;
+        this.logOffset = logOffset;
+    }
+
+    // ----- column positions, relative to the columns offset -----
+
+    private static int pricesAt(int rows) { return rows * 8; }
+
+    private static int pricesMinorAt(int rows) { return rows * 16; }
+
+    private static int weightsAt(int rows) { return rows * 24; }
+
+    private static int quantitiesAt(int rows) { return rows * 32; }
+
+    private static int categoriesAt(int rows) { return rows * 36; }
+
+    private static int kindsAt(int rows) { return rows * 40; }
+
+    // After the kinds, padded to a whole int
+    private static long idTableAt(int rows) {
+        return ((long) rows * COLUMN_BYTES_PER_ROW + 3) & ~3L;
+    }
+
+    private static int hash(String id) {
+        int h = id.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // ----- writing -----
+
+    /**
+     * Writes a snapshot of the products, which must be in creation order
+     * (as ProductRegistry.getAll() lists them). The file is written next to
+     * 'file' and moved over it when complete, so a crash leaves the previous
+     * snapshot in place. Products changing meanwhile may be saved in either state.
+     * @param logId id of the mutation log the products' changes go to (0: none)
+     * @param logOffset offset in that log up to which the changes are in the
+     *        products, taken before they are read
+     * @param shippingPolicyIds the id to save for each shipping policy in use
+     * @param extra the extra string to save with each product, may return null
+     * @throws IllegalArgumentException if a shipping policy has no id
+     */
+    public static void write(Path file, Collection<? extends Product> products, long logId, long logOffset,
+                             Function<ShippingPolicy, String> shippingPolicyIds,
+                             Function<? super Product, String> extra) throws IOException {
+        List<Product> list = new ArrayList<>(products);
+        long lastSeq = 0;
+        for (Product p : list) {
+            if (p.getSeq() <= lastSeq) {
+                throw new IllegalArgumentException("Products must be in creation order");
+            }
+            lastSeq = p.getSeq();
+        }
+        int rows = Math.toIntExact(lastSeq);
+        if (idTableAt(rows) + 4L * tableSlots(list.size()) > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many products for one snapshot: " + rows);
+        }
+
+        Map<Category, Integer> categoryIndex = new IdentityHashMap<>();
+        List<Category> categoryList = new ArrayList<>();
+        Map<ShippingPolicy, Integer> policyIndex = new IdentityHashMap<>();
+        Map<String, Integer> policyIds = new LinkedHashMap<>();
+        // read once here, so a product moved meanwhile is saved consistently
+        int[] categoryOf = new int[list.size()];
+        int[] policyOf = new int[list.size()];
+        for (int i = 0; i < list.size(); i++) {
+            Product p = list.get(i);
+            Category c = p.getCategory();
+            if (c != null && !categoryIndex.containsKey(c)) {
+                categoryIndex.put(c, categoryList.size());
+                categoryList.add(c);
+            }
+            categoryOf[i] = c != null ? categoryIndex.get(c) : -1;
+            ShippingPolicy policy = p instanceof PhysicalProduct physical ? physical.getShippingPolicy() : null;
+            if (policy != null && !policyIndex.containsKey(policy)) {
+                String id = shippingPolicyIds.apply(policy);
+                if (id == null) {
+                    throw new IllegalArgumentException("No id for shipping policy: " + policy.getName());
+                }
+                policyIndex.put(policy, policyIds.computeIfAbsent(id, k -> policyIds.size()));
+            }
+            policyOf[i] = policy != null ? policyIndex.get(policy) : -1;
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output out = new Output(channel, HEADER_BYTES);
+            for (Category c : categoryList) {
+                out.putInt(c.getId()).putString(c.getName()).putString(c.getDescription());
+            }
+            for (String id : policyIds.keySet()) {
+                out.putString(id);
+            }
+            out.align(8);
+            int[] checksums = new int[SECTIONS.length];
+            checksums[0] = out.checksum();
+
+            long recordsOffset = out.position();
+            long[] recordOffsets = new long[list.size()];
+            for (int i = 0; i < list.size(); i++) {
+                recordOffsets[i] = writeRecord(out, out.position() - recordsOffset, list.get(i), extra, policyOf[i]);
+            }
+            long recordsLength = out.position() - recordsOffset;
+            out.align(8);
+            checksums[1] = out.checksum();
+
+            long columnsOffset = out.position();
+            writeColumns(out, list, rows, recordOffsets, categoryOf);
+            out.align(4);
+            checksums[2] = out.checksum();
+
+            long idTableOffset = out.position();
+            int slots = tableSlots(list.size());
+            for (int entry : idTable(list, slots)) {
+                out.putInt(entry);
+            }
+            checksums[3] = out.checksum();
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN)
+                    .putInt(MAGIC).putInt(VERSION).putInt(rows).putInt(list.size())
+                    .putInt(categoryList.size()).putInt(policyIds.size()).putInt(slots).putInt(0)
+                    .putLong(recordsOffset).putLong(recordsLength).putLong(columnsOffset).putLong(idTableOffset)
+                    .putLong(logId).putLong(logOffset);
+            for (int checksum : checksums) {
+                header.putInt(checksum);
+            }
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Writes the product's record, first padding to the next segment if it would cross one;
+    // returns where in the record area the record starts
+    private static long writeRecord(Output out, long at, Product p, Function<? super Product, String> extra,
+                                    int policy) throws IOException {
+        byte[] id = utf8(p.getId());
+        byte[] name = utf8(p.getName());
+        byte[] description = utf8(p.getDescription());
+        byte[] extraText = utf8(extra.apply(p));
+        byte[] licenseKey = p instanceof DigitalProduct digital ? utf8(digital.getLicenseKey()) : null;
+        long length = 16L + length(id) + length(name) + length(description) + length(extraText);
+        if (p instanceof PhysicalProduct) {
+            length += 4 + 3 * 8;
+        } else if (p instanceof DigitalProduct) {
+            length += 8 + 4 + length(licenseKey);
+        }
+        if (length > MAX_RECORD_BYTES) {
+            throw new IllegalArgumentException("Product too large for a snapshot: " + p.getId());
+        }
+        if ((at & (SEGMENT_BYTES - 1)) + length > SEGMENT_BYTES) {
+            long padding = SEGMENT_BYTES - (at & (SEGMENT_BYTES - 1));
+            for (long i = 0; i < padding; i++) {
+                out.putByte((byte) 0);
+            }
+            at += padding;
+        }
+        out.putString(id).putString(name).putString(description).putString(extraText);
+        if (p instanceof PhysicalProduct physical) {
+            out.putInt(policy).putDouble(physical.getLengthCm())
+                    .putDouble(physical.getWidthCm()).putDouble(physical.getHeightCm());
+        } else if (p instanceof DigitalProduct digital) {
+            out.putDouble(digital.getDownloadSizeMb()).putString(licenseKey);
+        }
+        return at;
+    }
+
+    // Every column walks the rows once; rows without a product get the empty values
+    private static void writeColumns(Output out, List<Product> list, int rows, long[] recordOffsets,
+                                     int[] categoryOf) throws IOException {
+        int[] indexByRow = new int[rows];
+        Arrays.fill(indexByRow, -1);
+        for (int i = 0; i < list.size(); i++) {
+            indexByRow[(int) list.get(i).getSeq() - 1] = i;
+        }
+        for (int row = 0; row < rows; row++) {
+            out.putLong(indexByRow[row] >= 0 ? recordOffsets[indexByRow[row]] : -1);
+        }
+        for (int row = 0; row < rows; row++) {
+            out.putDouble(indexByRow[row] >= 0 ? list.get(indexByRow[row]).getPrice() : 0.0);
+        }
+        for (int row = 0; row < rows; row++) {
+            out.putLong(indexByRow[row] >= 0 ? list.get(indexByRow[row]).getPriceMinor() : 0);
+        }
+        for (int row = 0; row < rows; row++) {
+            out.putDouble(indexByRow[row] >= 0 && list.get(indexByRow[row]) instanceof PhysicalProduct physical
+                    ? physical.getWeightKg() : 0.0);
+        }
+        for (int row = 0; row < rows; row++) {
+            out.putInt(indexByRow[row] >= 0 ? list.get(indexByRow[row]).getQuantity() : 0);
+        }
+        for (int row = 0; row < rows; row++) {
+            out.putInt(indexByRow[row] >= 0 ? categoryOf[indexByRow[row]] : -1);
+        }
+        for (int row = 0; row < rows; row++) {
+            out.putByte(indexByRow[row] >= 0 ? kindOf(list.get(indexByRow[row])) : ProductStore.KIND_NONE);
+        }
+    }
+
+    private static byte kindOf(Product p) {
+        if (p instanceof PhysicalProduct) return ProductStore.KIND_PHYSICAL;
+        if (p instanceof DigitalProduct) return ProductStore.KIND_DIGITAL;
+        return ProductStore.KIND_PLAIN;
+    }
+
+    // At most 3/4 full, so probes stay short and always reach a free slot
+    private static int tableSlots(int products) {
+        long slots = Math.max(2, Long.highestOneBit(Math.max(1, (long) products * 4 / 3)) << 1);
+        return (int) Math.min(slots, 1 << 30);
+    }
+
+    // If two products share an id, the first one keeps it, as in ProductRegistry
+    private static int[] idTable(List<Product> list, int slots) {
+        int[] table = new int[slots];
+        int[] owners = new int[slots]; // index into 'list' of each slot's product
+        int mask = slots - 1;
+        products:
+        for (int i = 0; i < list.size(); i++) {
+            String id = list.get(i).getId();
+            int slot = hash(id) & mask;
+            while (table[slot] != 0) {
+                if (list.get(owners[slot]).getId().equals(id)) {
+                    continue products;
+                }
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = (int) list.get(i).getSeq();
+            owners[slot] = i;
+        }
+        return table;
+    }
+
+    private static byte[] utf8(String s) {
+        return s != null ? s.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes != null ? bytes.length : 0;
+    }
+
+    // Sequential writes through one direct buffer, with a running checksum
+    private static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        private final CRC32C crc = new CRC32C();
+        private int unchecked; // where the buffered bytes not yet in 'crc' start
+        private long position;
+
+        Output(FileChannel channel, long position) throws IOException {
+            this.channel = channel;
+            this.position = position;
+            channel.position(position);
+        }
+
+        long position() {
+            return position;
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+            position += bytes;
+        }
+
+        void flush() throws IOException {
+            update();
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+            unchecked = 0;
+        }
+
+        private void update() {
+            crc.update(buffer.slice(unchecked, buffer.position() - unchecked));
+            unchecked = buffer.position();
+        }
+
+        // CRC32C of everything put since the previous call
+        int checksum() {
+            update();
+            int value = (int) crc.getValue();
+            crc.reset();
+            return value;
+        }
+
+        Output putByte(byte value) throws IOException {
+            ensure(1);
+            buffer.put(value);
+            return this;
+        }
+
+        Output putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+            return this;
+        }
+
+        Output putLong(long value) throws IOException {
+            ensure(8);
+            buffer.putLong(value);
+            return this;
+        }
+
+        Output putDouble(double value) throws IOException {
+            ensure(8);
+            buffer.putDouble(value);
+            return this;
+        }
+
+        Output putString(String s) throws IOException {
+            return putString(utf8(s));
+        }
+
+        Output putString(byte[] utf8) throws IOException {
+            if (utf8 == null) {
+                return putInt(-1);
+            }
+            putInt(utf8.length);
+            for (int from = 0; from < utf8.length; ) {
+                int n = Math.min(utf8.length - from, buffer.capacity());
+                ensure(n);
+                buffer.put(utf8, from, n);
+                from += n;
+            }
+            return this;
+        }
+
+        void align(int bytes) throws IOException {
+            while (position % bytes != 0) {
+                putByte((byte) 0);
+            }
+        }
+    }
+
+    // ----- loading -----
+
+    /**
+     * Restores a snapshot into the (still empty) catalog: the numeric columns
+     * go into the ProductStore, the stock counts and category totals are set,
+     * and the registry lists the products, building each one on first use.
+     * The categories are created anew.
+     * @param shippingPolicies resolves the saved shipping policy ids
+     * @throws IllegalStateException if products have been created already
+     * @throws IllegalArgumentException if the file is not a valid snapshot or
+     *         names a shipping policy that cannot be resolved
+     */
+    public static CatalogSnapshot load(Path file, Function<String, ShippingPolicy> shippingPolicies) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                throw new IllegalArgumentException("Catalog snapshot is truncated");
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(0) != MAGIC) {
+                throw new IllegalArgumentException("Not a catalog snapshot file");
+            }
+            if (header.getInt(4) != VERSION) {
+                throw new IllegalArgumentException("Unsupported catalog snapshot version: " + header.getInt(4));
+            }
+            int rows = header.getInt(8);
+            int productCount = header.getInt(12);
+            int categoryCount = header.getInt(16);
+            int policyCount = header.getInt(20);
+            int slots = header.getInt(24);
+            long recordsOffset = header.getLong(32);
+            long recordsLength = header.getLong(40);
+            long columnsOffset = header.getLong(48);
+            long idTableOffset = header.getLong(56);
+            long logId = header.getLong(64);
+            long logOffset = header.getLong(72);
+            long columnsLength = idTableAt(rows) + 4L * slots;
+            if (rows < 0 || productCount < 0 || productCount > rows || categoryCount < 0 || policyCount < 0
+                    || slots <= 0 || Integer.bitCount(slots) != 1 || slots <= productCount
+                    || recordsOffset < HEADER_BYTES || recordsLength < 0 || recordsOffset + recordsLength > columnsOffset
+                    || idTableOffset != columnsOffset + idTableAt(rows) || columnsLength > Integer.MAX_VALUE
+                    || columnsOffset + columnsLength != size || logOffset < 0) {
+                throw new IllegalArgumentException("Catalog snapshot does not match its header");
+            }
+            long[] sections = {HEADER_BYTES, recordsOffset, columnsOffset, idTableOffset, size};
+            for (int i = 0; i < SECTIONS.length; i++) {
+                if (checksum(channel, sections[i], sections[i + 1]) != header.getInt(CHECKSUMS_AT + 4 * i)) {
+                    throw new IllegalArgumentException("Catalog snapshot is damaged: bad checksum of the " + SECTIONS[i]);
+                }
+            }
+
+            Reader meta = new Reader(channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES,
+                    recordsOffset - HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN), 0);
+            int[] categoryIds = new int[categoryCount];
+            String[] categoryNames = new String[categoryCount];
+            String[] categoryDescriptions = new String[categoryCount];
+            for (int i = 0; i < categoryCount; i++) {
+                categoryIds[i] = meta.getInt();
+                categoryNames[i] = meta.getString();
+                categoryDescriptions[i] = meta.getString();
+            }
+            ShippingPolicy[] policies = new ShippingPolicy[policyCount];
+            for (int i = 0; i < policyCount; i++) {
+                String id = meta.getString();
+                policies[i] = shippingPolicies.apply(id);
+                if (policies[i] == null) {
+                    throw new IllegalArgumentException("Unknown shipping policy in catalog snapshot: " + id);
+                }
+            }
+
+            ByteBuffer[] records = new ByteBuffer[(int) ((recordsLength + SEGMENT_BYTES - 1) >>> SEGMENT_BITS)];
+            for (int i = 0; i < records.length; i++) {
+                long start = (long) i << SEGMENT_BITS;
+                records[i] = channel.map(FileChannel.MapMode.READ_ONLY, recordsOffset + start,
+                        Math.min(SEGMENT_BYTES, recordsLength - start)).order(ByteOrder.LITTLE_ENDIAN);
+            }
+            ByteBuffer columns = channel.map(FileChannel.MapMode.READ_ONLY, columnsOffset, columnsLength)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            Tally tally = tally(columns, rows, categoryCount, recordsLength);
+
+            if (Product.registry().size() != 0) {
+                throw new IllegalStateException("A snapshot can only be loaded before any product is created");
+            }
+            List<Category> categories = new ArrayList<>(categoryCount);
+            int[] ordinals = new int[categoryCount];
+            for (int i = 0; i < categoryCount; i++) {
+                Category c = new Category(categoryIds[i], categoryNames[i], categoryDescriptions[i]);
+                categories.add(c);
+                ordinals[i] = c.getOrdinal();
+            }
+            CatalogSnapshot snapshot = new CatalogSnapshot(rows, productCount, Collections.unmodifiableList(categories),
+                    policies, records, columns, slots, logId, logOffset);
+            snapshot.restore(ordinals, tally);
+            return snapshot;
+        }
+    }
+
+    private static int checksum(FileChannel channel, long from, long to) throws IOException {
+        CRC32C crc = new CRC32C();
+        for (long at = from; at < to; at += SEGMENT_BYTES) {
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, at, Math.min(SEGMENT_BYTES, to - at)));
+        }
+        return (int) crc.getValue();
+    }
+
+    private record Tally(long[] counts, double[] totals) {}
+
+    // One pass over the columns: checks what restore() and the RowLoader take
+    // from them unchecked, and sums the stock counts and category totals
+    private static Tally tally(ByteBuffer columns, int rows, int categoryCount, long recordsLength) {
+        IntBuffer quantities = columns.slice(quantitiesAt(rows), rows * 4).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        IntBuffer categoryColumn = columns.slice(categoriesAt(rows), rows * 4).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        DoubleBuffer prices = columns.slice(pricesAt(rows), rows * 8).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+        ByteBuffer kinds = columns.slice(kindsAt(rows), rows);
+        int statuses = StockStatus.values().length;
+        long[] counts = new long[(categoryCount + 1) * statuses]; // [category index + 1][status]
+        double[] totals = new double[categoryCount];
+        for (int row = 0; row < rows; row++) {
+            byte kind = kinds.get(row);
+            if (kind == ProductStore.KIND_NONE) {
+                continue;
+            }
+            long offset = columns.getLong(row * 8);
+            int quantity = quantities.get(row);
+            int category = categoryColumn.get(row);
+            if (kind < ProductStore.KIND_NONE || kind > ProductStore.KIND_DIGITAL || offset < 0 || offset >= recordsLength
+                    || quantity < 0 || category < -1 || category >= categoryCount) {
+                throw new IllegalArgumentException("Catalog snapshot is damaged: bad columns at row " + row);
+            }
+            counts[(category + 1) * statuses + StockStatus.of(quantity).ordinal()]++;
+            if (category >= 0) {
+                totals[category] += prices.get(row) * quantity;
+            }
+        }
+        return new Tally(counts, totals);
+    }
+
+    private DoubleBuffer doubles(int at) {
+        return columns.slice(at, rows * 8).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+    }
+
+    private IntBuffer ints(int at) {
+        return columns.slice(at, rows * 4).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    }
+
+    private void restore(int[] ordinals, Tally tally) {
+        Product.store().restore(rows, columns.slice(kindsAt(rows), rows), doubles(pricesAt(rows)),
+                columns.slice(pricesMinorAt(rows), rows * 8).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer(),
+                ints(quantitiesAt(rows)), doubles(weightsAt(rows)), ints(categoriesAt(rows)), ordinals);
+
+        int statuses = StockStatus.values().length;
+        long[] counts = tally.counts();
+        double[] totals = tally.totals();
+        for (int i = 0; i <= categories.size(); i++) {
+            Category category = i > 0 ? categories.get(i - 1) : null;
+            for (StockStatus status : StockStatus.values()) {
+                long count = counts[i * statuses + status.ordinal()];
+                if (count > 0) {
+                    Product.stockCounts().restored(category, status, count);
+                }
+            }
+            if (category != null) {
+                category.productValueChanged(totals[i - 1]);
+            }
+        }
+
+        Product.restored(rows, productCount);
+        Product.registry().restore(new RowLoader(), productCount);
+    }
+
+    // ----- building products -----
+
+    private final class RowLoader implements ProductRegistry.Loader {
+        @Override
+        public int rows() {
+            return rows;
+        }
+
+        @Override
+        public boolean exists(int row) {
+            return columns.get(kindsAt(rows) + row) != ProductStore.KIND_NONE;
+        }
+
+        @Override
+        public Product load(int row) {
+            byte kind = columns.get(kindsAt(rows) + row);
+            if (kind == ProductStore.KIND_NONE) {
+                return null;
+            }
+            Reader in = record(row);
+            long seq = row + 1L;
+            String id = in.getString();
+            String name = in.getString();
+            String description = in.getString();
+            in.skipString(); // extra
+            int categoryIndex = columns.getInt(categoriesAt(rows) + row * 4);
+            Category category = categoryIndex >= 0 ? categories.get(categoryIndex) : null;
+            if (kind == ProductStore.KIND_PHYSICAL) {
+                int policy = in.getInt();
+                if (policy < -1 || policy >= shippingPolicies.length) {
+                    throw new IllegalArgumentException("Catalog snapshot is damaged: bad record at row " + row);
+                }
+                return new PhysicalProduct(seq, id, name, description, category,
+                        in.getDouble(), in.getDouble(), in.getDouble(), policy >= 0 ? shippingPolicies[policy] : null);
+            }
+            if (kind == ProductStore.KIND_DIGITAL) {
+                return new DigitalProduct(seq, id, name, description, category, in.getDouble(), in.getString());
+            }
+            return new Product(seq, id, name, description, category);
+        }
+
+        @Override
+        public int rowOf(String id) {
+            byte[] key = id.getBytes(StandardCharsets.UTF_8);
+            int mask = idTableSlots - 1;
+            int table = (int) idTableAt(rows);
+            int slot = hash(id) & mask;
+            for (int probes = 0; probes < idTableSlots; probes++) {
+                int entry = columns.getInt(table + slot * 4);
+                if (entry == 0) {
+                    return -1;
+                }
+                if (entry < 0 || entry > rows || !exists(entry - 1)) {
+                    throw new IllegalArgumentException("Catalog snapshot is damaged: bad id table entry " + slot);
+                }
+                if (record(entry - 1).stringEquals(key)) {
+                    return entry - 1;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+    }
+
+    private Reader record(int row) {
+        long offset = columns.getLong(row * 8);
+        return new Reader(records[(int) (offset >>> SEGMENT_BITS)], (int) (offset & (SEGMENT_BYTES - 1)));
+    }
+
+    // Absolute reads from a shared buffer, with its own position.
+    // Reads past the buffer's limit throw IllegalArgumentException.
+    private static final class Reader {
+        private final ByteBuffer buffer;
+        private int position;
+
+        Reader(ByteBuffer buffer, int position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        private void need(long bytes) {
+            if (bytes < 0 || position + bytes > buffer.limit()) {
+                throw new IllegalArgumentException("Catalog snapshot is damaged: a value runs past its section");
+            }
+        }
+
+        int getInt() {
+            need(4);
+            int value = buffer.getInt(position);
+            position += 4;
+            return value;
+        }
+
+        double getDouble() {
+            need(8);
+            double value = buffer.getDouble(position);
+            position += 8;
+            return value;
+        }
+
+        // -1 for null
+        private int stringLength() {
+            int length = getInt();
+            need(length == -1 ? 0 : length);
+            return length;
+        }
+
+        String getString() {
+            int length = stringLength();
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(position, bytes);
+            position += length;
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        void skipString() {
+            int length = stringLength();
+            position += Math.max(0, length);
+        }
+
+        boolean stringEquals(byte[] utf8) {
+            int start = position;
+            int length = stringLength();
+            position = start;
+            return length == utf8.length && buffer.slice(position + 4, length).equals(ByteBuffer.wrap(utf8));
+        }
+    }
+
+    // ----- queries -----
+
+    /**
+     * @return the categories restored with the snapshot, in the order they were saved
+     */
+    public List<Category> getCategories() {
+        return categories;
+    }
+
+    public int getProductCount() {
+        return productCount;
+    }
+
+    /**
+     * @return the id of the mutation log recorded with the snapshot, 0 if none
+     */
+    public long getLogId() {
+        return logId;
+    }
+
+    /**
+     * @return the offset in that log from which changes are not in the snapshot
+     */
+    public long getLogOffset() {
+        return logOffset;
+    }
+
+    /**
+     * @return the extra string saved with the product, or null if there was
+     *         none or the product is not one of this snapshot's
+     */
+    public String extra(Product p) {
+        long seq = p.getSeq();
+        if (seq > rows || columns.get(kindsAt(rows) + (int) (seq - 1)) == ProductStore.KIND_NONE) {
+            return null;
+        }
+        Reader in = record((int) (seq - 1));
+        in.skipString();
+        in.skipString();
+        in.skipString();
+        return in.getString();
+    }
+}
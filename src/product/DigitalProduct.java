@@ -24,9 +24,18 @@ public class DigitalProduct extends Product {
         trySetLicenseKey(licenseKey);
     }
 
+    // Restores a product from a CatalogSnapshot
+    DigitalProduct(long seq, String id, String name, String description, Category category,
+                   double downloadSizeMb, String licenseKey) {
+        super(seq, id, name, description, category);
+        this.downloadSizeMb = downloadSizeMb;
+        this.licenseKey = licenseKey;
+    }
+
     public boolean trySetDownloadSizeMb(double downloadSizeMb) {
         if (downloadSizeMb >= 0.0 && downloadSizeMb <= 1_000_000.0) {
             this.downloadSizeMb = downloadSizeMb;
+            detailsChanged();
             return true;
         }
         return false;
@@ -35,10 +44,12 @@ public class DigitalProduct extends Product {
     public boolean trySetLicenseKey(String licenseKey) {
         if (licenseKey == null) {
             this.licenseKey = null;
+            detailsChanged();
             return true;
         }
         if (licenseKey.length() <= 64) {
             this.licenseKey = licenseKey;
+            detailsChanged();
             return true;
         }
         return false;
@@ -62,11 +73,8 @@ public class DigitalProduct extends Product {
      */
 
     @Override
-    public double finalPrice(int qty, product.pricing.PricePolicy policy) {
-        if (policy instanceof product.pricing.BogoHalfPromotion) {
-            return super.finalPrice(qty); // ignore BOGO-half for digital
-        }
-        return super.finalPrice(qty, policy);
+    public boolean acceptsPolicy(product.pricing.PricePolicy policy) {
+        return !(policy instanceof product.pricing.BogoHalfPromotion); // ignore BOGO-half for digital
     }
 
     @Override
@@ -0,0 +1,37 @@
+package product;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out unique numbers for auto-assigned product ids.
+ * Each thread reserves a block of numbers at once and then counts through it
+ * locally, so parallel imports touch the shared counter once per block
+ * instead of once per product.
+ * Numbers are unique but only ordered within a thread; a single thread
+ * still gets 1, 2, 3, ...
+ */
+final class IdAllocator {
+    private static final int BLOCK_SIZE = 256;
+
+    private final AtomicLong nextBlockStart = new AtomicLong(1);
+    private final ThreadLocal<long[]> block = ThreadLocal.withInitial(() -> new long[2]); // {next, end}
+
+    long next() {
+        long[] b = block.get();
+        if (b[0] == b[1]) {
+            long start = nextBlockStart.getAndAdd(BLOCK_SIZE);
+            b[0] = start;
+            b[1] = start + BLOCK_SIZE;
+        }
+        return b[0]++;
+    }
+
+    /**
+     * Makes every number handed out from now on at least 'first', e.g. past
+     * products restored with their own sequence numbers. Blocks already
+     * reserved by a thread are not affected.
+     */
+    void skipTo(long first) {
+        nextBlockStart.accumulateAndGet(first, Math::max);
+    }
+}
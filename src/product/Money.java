@@ -0,0 +1,135 @@
+package product;
+
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point money: amounts are plain longs counting minor units
+ * (1/100 of a tenge, so 1234.50 KZT is 123450).
+ * Every method is static and works on primitives, so pricing code can do
+ * exact arithmetic without floating point, boxing or BigDecimal allocation.
+ * Rounding is always explicit; DEFAULT_ROUNDING is used where a method
+ * does not take a RoundingMode.
+ */
+public final class Money {
+    public static final int SCALE = 2;
+    public static final long MINOR_PER_MAJOR = 100;
+    public static final long BASIS_POINTS = 10_000; // 100% in basis points
+    public static final RoundingMode DEFAULT_ROUNDING = RoundingMode.HALF_UP;
+
+    // Doubles such as 2.675 are really 2.67499999...; fractions this close
+    // to a whole or half minor unit are treated as exactly that.
+    private static final double SNAP = 1e-6;
+
+    private Money() {
+    }
+
+    /**
+     * Converts a decimal amount (e.g. a double price) to minor units.
+     */
+    public static long ofMajor(double amount) {
+        return ofMajor(amount, DEFAULT_ROUNDING);
+    }
+
+    public static long ofMajor(double amount, RoundingMode mode) {
+        if (Double.isNaN(amount) || Double.isInfinite(amount)) {
+            throw new ArithmeticException("Not a money amount: " + amount);
+        }
+        double scaled = amount * MINOR_PER_MAJOR;
+        double floor = Math.floor(scaled);
+        double frac = scaled - floor;
+        if (frac < SNAP) {
+            frac = 0.0;
+        } else if (1.0 - frac < SNAP) {
+            floor += 1.0;
+            frac = 0.0;
+        } else if (Math.abs(frac - 0.5) < SNAP) {
+            frac = 0.5;
+        }
+        long lower = (long) floor;
+        if (frac == 0.0) {
+            return lower;
+        }
+        return lower + (roundUp(lower, frac < 0.5 ? -1 : frac > 0.5 ? 1 : 0, scaled >= 0, mode) ? 1 : 0);
+    }
+
+    public static double toMajor(long minor) {
+        return minor / (double) MINOR_PER_MAJOR;
+    }
+
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    public static long subtract(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+    public static long times(long minor, int qty) {
+        return Math.multiplyExact(minor, (long) qty);
+    }
+
+    /**
+     * @return minor * basisPoints / 10000, e.g. percentOf(12345, 1200, ...) is 12% of 123.45
+     */
+    public static long percentOf(long minor, long basisPoints, RoundingMode mode) {
+        return multiply(minor, basisPoints, BASIS_POINTS, mode);
+    }
+
+    /**
+     * @return minor * numerator / denominator, rounded once at the end
+     */
+    public static long multiply(long minor, long numerator, long denominator, RoundingMode mode) {
+        return divide(Math.multiplyExact(minor, numerator), denominator, mode);
+    }
+
+    /**
+     * Integer division with an explicit rounding mode.
+     * @throws ArithmeticException if mode is UNNECESSARY and the division is inexact
+     */
+    public static long divide(long dividend, long divisor, RoundingMode mode) {
+        if (divisor == 0) {
+            throw new ArithmeticException("Division by zero");
+        }
+        long lower = Math.floorDiv(dividend, divisor);
+        long rem = Math.floorMod(dividend, divisor); // same sign as divisor
+        if (rem == 0) {
+            return lower;
+        }
+        long absRem = Math.abs(rem);
+        long absDivisor = Math.abs(divisor);
+        // compare the remainder with half the divisor without overflowing
+        int half = Long.compare(absRem, absDivisor - absRem);
+        boolean positive = (dividend >= 0) == (divisor > 0);
+        // floorDiv rounds toward negative infinity; when the divisor is negative
+        // the true quotient lies between 'lower' and 'lower + 1' the same way
+        return lower + (roundUp(lower, half, positive, mode) ? 1 : 0);
+    }
+
+    /**
+     * Decides whether a value strictly between 'lower' and 'lower + 1' rounds up.
+     * @param half -1 if the fraction is below one half, 0 at one half, 1 above
+     * @param positive whether the exact value is positive (for UP/DOWN/HALF_UP/HALF_DOWN)
+     */
+    private static boolean roundUp(long lower, int half, boolean positive, RoundingMode mode) {
+        switch (mode) {
+            case FLOOR: return false;
+            case CEILING: return true;
+            case DOWN: return !positive;
+            case UP: return positive;
+            case HALF_UP: return half > 0 || (half == 0 && positive);
+            case HALF_DOWN: return half > 0 || (half == 0 && !positive);
+            case HALF_EVEN: return half > 0 || (half == 0 && (lower & 1) != 0);
+            default: throw new ArithmeticException("Rounding necessary");
+        }
+    }
+
+    /**
+     * @return the amount as a plain decimal string, e.g. "1234.50" or "-0.05"
+     */
+    public static String format(long minor) {
+        long abs = Math.abs(minor);
+        long major = abs / MINOR_PER_MAJOR;
+        long cents = abs % MINOR_PER_MAJOR;
+        return (minor < 0 ? "-" : "") + major + (cents < 10 ? ".0" : ".") + cents;
+    }
+}
@@ -1,21 +1,43 @@
 package product;
 
+import category.Category;
 import product.shipping.Shippable;
+import product.shipping.ShippingInput;
 import product.shipping.ShippingPolicy;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Set;
+
 public class PhysicalProduct extends Product implements Shippable {
-    private double weightKg;
+    private static final VarHandle SHIPPING_VERSION;
+
+    static {
+        try {
+            SHIPPING_VERSION = MethodHandles.lookup().findVarHandle(PhysicalProduct.class, "shippingVersion", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // Memoized shipping cost, valid while 'version' matches shippingVersion
+    private record ShippingQuote(int version, double cost, long costMinor) {
+    }
+
     private double lengthCm;
     private double widthCm;
     private double heightCm;
-    private ShippingPolicy shippingPolicy;
+    private volatile ShippingPolicy shippingPolicy;
+    private Set<ShippingInput> shippingInputs; // what the current policy reads
+    private volatile int shippingVersion;      // bumped whenever an input of the cost changes
+    private volatile ShippingQuote shippingQuote;
 
     public PhysicalProduct() {
         super();
-        this.weightKg = 0.0;
         this.lengthCm = 0.0;
         this.widthCm = 0.0;
         this.heightCm = 0.0;
+        this.shippingInputs = inputsOf(null);
         this.shippingPolicy = null; // Policy must be set later
     }
 
@@ -25,6 +47,7 @@ public class PhysicalProduct extends Product implements Shippable {
         this.lengthCm = 0.0;
         this.widthCm = 0.0;
         this.heightCm = 0.0;
+        this.shippingInputs = inputsOf(shippingPolicy);
         this.shippingPolicy = shippingPolicy;
     }
 
@@ -34,6 +57,18 @@ public class PhysicalProduct extends Product implements Shippable {
         super(id, name, description, price, quantity, null);
         trySetWeightKg(weightKg);
         trySetDimensions(lengthCm, widthCm, heightCm);
+        this.shippingInputs = inputsOf(shippingPolicy);
+        this.shippingPolicy = shippingPolicy;
+    }
+
+    // Restores a product from a CatalogSnapshot; the weight is already in the store
+    PhysicalProduct(long seq, String id, String name, String description, Category category,
+                    double lengthCm, double widthCm, double heightCm, ShippingPolicy shippingPolicy) {
+        super(seq, id, name, description, category);
+        this.lengthCm = lengthCm;
+        this.widthCm = widthCm;
+        this.heightCm = heightCm;
+        this.shippingInputs = inputsOf(shippingPolicy);
         this.shippingPolicy = shippingPolicy;
     }
 
@@ -42,12 +77,21 @@ public class PhysicalProduct extends Product implements Shippable {
     }
 
     public void setShippingPolicy(ShippingPolicy shippingPolicy) {
+        this.shippingInputs = inputsOf(shippingPolicy);
         this.shippingPolicy = shippingPolicy;
+        invalidateShippingCost();
+        detailsChanged();
+    }
+
+    private static Set<ShippingInput> inputsOf(ShippingPolicy shippingPolicy) {
+        return shippingPolicy != null ? shippingPolicy.dependsOn() : Set.of();
     }
 
     public boolean trySetWeightKg(double weightKg) {
         if (weightKg >= 0.0 && weightKg <= 1000.0) {
-            this.weightKg = weightKg;
+            store().setWeight(storeRow(), weightKg);
+            shippingInputChanged(ShippingInput.WEIGHT);
+            detailsChanged();
             return true;
         }
         return false;
@@ -60,22 +104,63 @@ public class PhysicalProduct extends Product implements Shippable {
             this.lengthCm = lengthCm;
             this.widthCm = widthCm;
             this.heightCm = heightCm;
+            shippingInputChanged(ShippingInput.DIMENSIONS);
+            detailsChanged();
             return true;
         }
         return false;
     }
 
+    @Override
+    protected void onPriceChanged() {
+        shippingInputChanged(ShippingInput.PRICE);
+    }
+
+    private void shippingInputChanged(ShippingInput input) {
+        Set<ShippingInput> inputs = shippingInputs;
+        // null while the constructor has not assigned a policy yet
+        if (inputs == null || inputs.contains(input)) {
+            invalidateShippingCost();
+        }
+    }
+
+    private void invalidateShippingCost() {
+        SHIPPING_VERSION.getAndAdd(this, 1);
+    }
+
     /**
      * Implements Shippable interface: returns shipping cost by delegating to a shipping policy.
+     * The cost is memoized and recomputed only after an attribute the policy
+     * depends on (or the policy itself) has changed.
      * @throws IllegalStateException if the shipping policy has not been set.
      */
     @Override
     public double getShippingCost() {
-        if (shippingPolicy == null) {
+        return shippingQuote().cost();
+    }
+
+    @Override
+    public long getShippingCostMinor() {
+        return shippingQuote().costMinor();
+    }
+
+    private ShippingQuote shippingQuote() {
+        // read the version before the policy: setShippingPolicy writes them in the other order
+        int version = shippingVersion;
+        ShippingQuote quote = shippingQuote;
+        if (quote != null && quote.version() == version) {
+            return quote;
+        }
+        ShippingPolicy policy = shippingPolicy;
+        if (policy == null) {
             // Or return a default cost, or handle as an error
             throw new IllegalStateException("Shipping policy not set for product: " + getName());
         }
-        return shippingPolicy.calculateCost(this);
+        // If an input changes while we compute, the quote is stored with a stale version
+        // and simply recomputed on the next call.
+        quote = new ShippingQuote(version, policy.calculateCost(this), policy.calculateCostMinor(this));
+        shippingQuote = quote;
+        return quote;
     }
 
     /**
@@ -87,7 +172,21 @@ public class PhysicalProduct extends Product implements Shippable {
     }
 
     public double getWeightKg() {
-        return weightKg;
+        return store().weight(storeRow());
+    }
+
+    /**
+     * @return the weight rounded to whole grams, for fixed-point shipping math
+     */
+    public long getWeightGrams() {
+        return Math.round(getWeightKg() * 1000);
+    }
+
+    /**
+     * @return the package volume rounded to whole cubic centimetres
+     */
+    public long getVolumeCm3() {
+        return Math.round(lengthCm * widthCm * heightCm);
     }
 
     public double getLengthCm() {
@@ -109,7 +208,7 @@ public class PhysicalProduct extends Product implements Shippable {
                ", name='" + getName() + '\'' +
                ", price=" + getPrice() + " " + DEFAULT_CURRENCY +
                ", quantity=" + getQuantity() +
-               ", weightKg=" + weightKg +
+               ", weightKg=" + getWeightKg() +
                ", dimensions=" + lengthCm + "x" + widthCm + "x" + heightCm + " cm" +
                ", shippingPolicy=" + (shippingPolicy != null ? shippingPolicy.getName() : "None") +
                ", stockStatus='" + getStockStatus() + '\'' +
@@ -1,32 +1,57 @@
 package product;
 
 import category.Category;
-import java.util.ArrayList;
-import java.util.List;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class Product {
     public static final String DEFAULT_CURRENCY = "KZT";
-    private static int SEQ = 1;
-    private static int createdCount = 0;
-    private static List<Product> allProducts = new ArrayList<>();
- 
+    private static final IdAllocator AUTO_IDS = new IdAllocator();
+    private static final LongAdder createdCount = new LongAdder();
+    private static final ProductRegistry REGISTRY = new ProductRegistry();
+    private static final ProductStore STORE = new ProductStore();
+    private static final StockCounts STOCK = new StockCounts();
+    private static final int MAX_QUANTITY = 1_000_000;
+    private static final Comparator<Product> BY_SEQ = Comparator.comparingLong(Product::getSeq);
+
+    private final long seq;
+    // price and quantity live in STORE at this row
+    private final int row;
+    // Taken for every change to stock, price or category, so a check and the
+    // update it allows are one step, and the deltas posted to the category
+    // come from one consistent price, quantity and category. Several products
+    // are locked in seq order. Reads do not lock.
+    private final ReentrantLock lock = new ReentrantLock();
     private String id;
     private String name;
     private String description;
-    private double price;
-    private int quantity;
-    private Category category;
+    private volatile Category category; // changed under the lock
 
     public Product() {
-        this.id = nextSeq();
+        this.row = STORE.allocate(storeKind());
+        this.seq = row + 1L;
+        this.id = String.valueOf(AUTO_IDS.next());
         this.name = "Unnamed";
         this.description = null;
-        this.price = 0.0;
-        this.quantity = 0;
         this.category = null;
+        STOCK.added(null, StockStatus.of(0));
 
-        createdCount++;
-        allProducts.add(this);
+        createdCount.increment();
+        REGISTRY.register(this);
+    }
+
+    // Restores a product from a CatalogSnapshot. Its store row, stock counts
+    // and registry entry are already in place, so nothing is validated or announced.
+    Product(long seq, String id, String name, String description, Category category) {
+        this.seq = seq;
+        this.row = Math.toIntExact(seq - 1);
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.category = category;
     }
 
     public Product(String id, String name, double price) {
@@ -48,12 +73,50 @@ public class Product {
         trySetCategory(category);
     }
 
-    private static String nextSeq() {
-        return String.valueOf(SEQ++);
+    public static int getCreatedCount() {
+        return createdCount.intValue();
     }
 
-    public static int getCreatedCount() {
-        return createdCount;
+    public static ProductRegistry registry() {
+        return REGISTRY;
+    }
+
+    /**
+     * @return the columnar store backing every product's numeric fields
+     */
+    public static ProductStore store() {
+        return STORE;
+    }
+
+    /**
+     * @return live product counts per stock status, overall and per category
+     */
+    public static StockCounts stockCounts() {
+        return STOCK;
+    }
+
+    // Accounts for 'count' products restored with sequence numbers up to 'lastSeq'
+    static void restored(long lastSeq, int count) {
+        AUTO_IDS.skipTo(lastSeq + 1);
+        createdCount.add(count);
+    }
+
+    private byte storeKind() {
+        if (this instanceof PhysicalProduct) return ProductStore.KIND_PHYSICAL;
+        if (this instanceof DigitalProduct) return ProductStore.KIND_DIGITAL;
+        return ProductStore.KIND_PLAIN;
+    }
+
+    // Row in the store, for subclasses that keep their own columns there
+    int storeRow() {
+        return row;
+    }
+
+    /**
+     * @return the product with the given id, or null if there is none
+     */
+    public static Product findById(String id) {
+        return REGISTRY.findById(id);
     }
 
     public static Product of(String id, String name, double price) {
@@ -76,19 +139,19 @@ public class Product {
         String uniqueId = id.trim();
 
         // Проверка на уникальность
-        for (Product p : allProducts) {
-            if (p.getId() != null && p.getId().equals(uniqueId)) {
-                return false;
-            }
+        if (!REGISTRY.rename(this, this.id, uniqueId)) {
+            return false;
         }
 
         this.id = uniqueId;
+        detailsChanged();
         return true;
     }
 
     public boolean trySetName(String name) {
         if (name != null && name.trim().length() >= 2) {
             this.name = name.trim();
+            detailsChanged();
             return true;
         }
         return false;
@@ -97,11 +160,13 @@ public class Product {
     public boolean trySetDescription(String description) {
         if (description == null) {
             this.description = null;
+            detailsChanged();
             return true;
         }
         String trimmed = description.trim();
         if (trimmed.length() <= 200) {
             this.description = trimmed;
+            detailsChanged();
             return true;
         }
         return false;
@@ -109,51 +174,286 @@ public class Product {
 
     public boolean trySetPrice(double price) {
         if (price >= 0.0 && price <= 1_000_000.0) {
-            this.price = price;
+            lock.lock();
+            try {
+                setPrice(price);
+            } finally {
+                lock.unlock();
+            }
             return true;
         }
         return false;
     }
 
+    /**
+     * Sets the price from Money minor units, e.g. 123450 for 1234.50.
+     */
+    public boolean trySetPriceMinor(long priceMinor) {
+        return trySetPrice(Money.toMajor(priceMinor));
+    }
+
     public boolean trySetQuantity(int quantity) {
-        if (quantity >= 0 && quantity <= 1_000_000) {
-            this.quantity = quantity;
+        if (quantity >= 0 && quantity <= MAX_QUANTITY) {
+            lock.lock();
+            try {
+                setQuantity(quantity);
+            } finally {
+                lock.unlock();
+            }
             return true;
         }
         return false;
     }
 
+    /**
+     * Moves the product into 'category' (null: none), listing it there and
+     * taking it off its previous category's list, as Category.addProduct does.
+     */
     public boolean trySetCategory(Category category) {
+        lock.lock();
+        try {
+            moveTo(category);
+            return category != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Moves the product into 'category' only if it is still in 'expected'.
+     * Category.addProduct and removeProduct go through here.
+     * @return false if the product was not in 'expected' or already in 'category'
+     */
+    public boolean tryMoveCategory(Category expected, Category category) {
+        lock.lock();
+        try {
+            if (this.category != expected || expected == category) {
+                return false;
+            }
+            moveTo(category);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Call with the lock held; the category lists and totals change together with the field
+    private void moveTo(Category category) {
+        Category previous = this.category;
+        if (previous == category) {
+            return;
+        }
+        double value = calculateTotalValue();
+        if (previous != null) previous.productRemoved(this, value);
+        if (category != null) category.productAdded(this, value);
+        STOCK.recategorized(previous, category, getStockStatus());
         this.category = category;
-        return category != null;
+        STORE.setCategory(row, category != null ? category.getOrdinal() : ProductStore.NO_CATEGORY);
+        REGISTRY.fireCategoryChanged(this, previous, category);
     }
 
+    /**
+     * Adds stock unless the quantity would exceed the stock cap.
+     */
     public boolean addStock(int amount) {
-        if (amount > 0 && (this.quantity + amount) <= 1_000_000) {
-            this.quantity += amount;
+        if (amount <= 0) {
+            return false;
+        }
+        lock.lock();
+        try {
+            int current = STORE.quantity(row);
+            if ((long) current + amount > MAX_QUANTITY) {
+                return false;
+            }
+            setQuantity(current + amount);
             return true;
+        } finally {
+            lock.unlock();
         }
-        return false;
     }
 
     public boolean sellProduct(int amount) {
-        if (amount > 0 && amount <= this.quantity) {
-            this.quantity -= amount;
+        return trySell(amount);
+    }
+
+    /**
+     * Sells 'amount' units only if that many are in stock, so concurrent
+     * checkouts can never oversell.
+     * @return true if the stock was decremented
+     */
+    public boolean trySell(int amount) {
+        if (amount <= 0) {
+            return false;
+        }
+        lock.lock();
+        try {
+            int current = STORE.quantity(row);
+            if (amount > current) {
+                return false;
+            }
+            setQuantity(current - amount);
             return true;
+        } finally {
+            lock.unlock();
         }
-        return false;
+    }
+
+    /**
+     * All-or-nothing decrement for a whole cart: either every product is sold
+     * in its amount, or no stock changes at all.
+     * Every product is locked (in seq order, so concurrent carts cannot
+     * deadlock) and checked before any stock is taken, so a refused cart
+     * changes nothing and fires no events.
+     * @param products the products to sell (the same product may appear more than once)
+     * @param amounts amount to sell for each product, index-aligned with 'products'
+     * @return true if every line was sold
+     */
+    public static boolean trySellAll(Product[] products, int[] amounts) {
+        if (products == null || amounts == null || products.length != amounts.length) {
+            return false;
+        }
+        for (int i = 0; i < products.length; i++) {
+            if (products[i] == null || amounts[i] <= 0) {
+                return false;
+            }
+        }
+        // Each product once, with the amounts of its lines added up
+        Product[] distinct = products.clone();
+        Arrays.sort(distinct, BY_SEQ);
+        int n = 0;
+        for (Product p : distinct) {
+            if (n == 0 || distinct[n - 1] != p) {
+                distinct[n++] = p;
+            }
+        }
+        long[] wanted = new long[n];
+        for (int i = 0; i < products.length; i++) {
+            wanted[Arrays.binarySearch(distinct, 0, n, products[i], BY_SEQ)] += amounts[i];
+        }
+
+        int locked = 0;
+        try {
+            for (; locked < n; locked++) {
+                distinct[locked].lock.lock();
+            }
+            for (int i = 0; i < n; i++) {
+                if (wanted[i] > distinct[i].getQuantity()) {
+                    return false;
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                distinct[i].setQuantity(distinct[i].getQuantity() - (int) wanted[i]);
+            }
+            return true;
+        } finally {
+            while (locked > 0) {
+                distinct[--locked].lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Puts back what a successful trySellAll took, e.g. when the order cannot
+     * be completed after all. Same arguments as that call. Every unit goes
+     * back, even if stock added meanwhile takes a product over the cap.
+     */
+    public static void restockAll(Product[] products, int[] amounts) {
+        for (int i = 0; i < products.length; i++) {
+            products[i].restock(amounts[i]);
+        }
+    }
+
+    // Puts back stock taken by trySellAll. An addStock landing in between may
+    // have used up the room under the cap; every unit is put back all the same,
+    // and addStock refuses more until the stock is under the cap again.
+    private void restock(int amount) {
+        lock.lock();
+        try {
+            setQuantity(Math.addExact(STORE.quantity(row), amount));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Call with the lock held
+    private void setQuantity(int quantity) {
+        int oldQuantity = STORE.quantity(row);
+        STORE.setQuantity(row, quantity);
+        quantityChanged(oldQuantity, quantity);
+    }
+
+    // Call with the lock held
+    private void setPrice(double price) {
+        double oldPrice = getPrice();
+        STORE.setPrice(row, price, Money.ofMajor(price));
+        priceChanged(oldPrice, price);
+    }
+
+    // Called under the lock; keeps the category's running total in step with this product's stock value
+    private void priceChanged(double oldPrice, double newPrice) {
+        if (oldPrice == newPrice) {
+            return;
+        }
+        Category c = category;
+        if (c != null) {
+            c.productValueChanged((newPrice - oldPrice) * getQuantity());
+        }
+        onPriceChanged();
+        REGISTRY.firePriceChanged(this, oldPrice, newPrice);
+    }
+
+    /**
+     * Hook for subclasses that derive cached values from the price.
+     * Called after trySetPrice or applyDiscount changed it.
+     */
+    protected void onPriceChanged() {
+    }
+
+    // Called under the lock with the exact before/after of each stock update,
+    // so the status counts stay exact however the updates interleave
+    private void quantityChanged(int oldQuantity, int newQuantity) {
+        if (oldQuantity == newQuantity) {
+            return;
+        }
+        Category c = category;
+        if (c != null) {
+            c.productValueChanged(getPrice() * (newQuantity - oldQuantity));
+        }
+        StockStatus oldStatus = StockStatus.of(oldQuantity);
+        StockStatus newStatus = StockStatus.of(newQuantity);
+        if (oldStatus != newStatus) {
+            STOCK.moved(c, oldStatus, newStatus);
+        }
+        REGISTRY.fireQuantityChanged(this, oldQuantity, newQuantity);
+        if (oldStatus != newStatus) {
+            REGISTRY.fireStockStatusChanged(this, oldStatus, newStatus);
+        }
+    }
+
+    /**
+     * Notifies ProductListeners that a descriptive attribute changed.
+     * Subclasses call it from their own setters.
+     */
+    protected void detailsChanged() {
+        REGISTRY.fireDetailsChanged(this);
     }
 
     public boolean applyDiscount(double percent) {
         if (percent >= 0 && percent <= 90) {
-            this.price -= this.price * (percent / 100);
+            lock.lock();
+            try {
+                double price = getPrice();
+                setPrice(price - price * (percent / 100));
+            } finally {
+                lock.unlock();
+            }
             return true;
         }
         return false;
     }
 
     public double calculateTotalValue() {
-        return this.price * this.quantity;
+        return getPrice() * getQuantity();
     }
 
     /**
@@ -175,10 +475,44 @@ public class Product {
     // 3) qty + single rule (no shipping here; subclasses may add it)
     public double finalPrice(int qty, product.pricing.PricePolicy policy) {
         if (qty <= 0) return 0.0;
-        if (policy == null || !policy.applicableTo(this)) return finalPrice(qty);
+        if (policy == null || !acceptsPolicy(policy) || !policy.applicableTo(this)) return finalPrice(qty);
         return policy.apply(this, qty);
     }
 
+    /**
+     * Fixed-point variants of finalPrice(): same rules, but every amount is a
+     * long in Money minor units and no floating point is involved.
+     */
+    public long finalPriceMinor(int qty) {
+        if (qty <= 0) return 0L;
+        return Money.times(getPriceMinor(), qty);
+    }
+
+    public long finalPriceMinor(int qty, product.pricing.PricePolicy policy) {
+        if (qty <= 0) return 0L;
+        if (policy == null || !acceptsPolicy(policy) || !policy.applicableTo(this)) return finalPriceMinor(qty);
+        return policy.applyMinor(this, qty);
+    }
+
+    public long finalPriceMinor(int qty, java.util.List<product.pricing.PricePolicy> policies) {
+        if (qty <= 0) return 0L;
+        if (policies == null || policies.isEmpty()) return finalPriceMinor(qty);
+        long best = Long.MAX_VALUE;
+        for (var pp : policies) {
+            long v = finalPriceMinor(qty, pp);
+            if (v < best) best = v;
+        }
+        return best;
+    }
+
+    /**
+     * Whether this kind of product takes part in the given pricing rule at all.
+     * Subclasses override this to opt out of specific rules.
+     */
+    public boolean acceptsPolicy(product.pricing.PricePolicy policy) {
+        return true;
+    }
+
     // 4) qty + list of rules (choose the best = minimal price)
     public double finalPrice(int qty, java.util.List<product.pricing.PricePolicy> policies) {
         if (qty <= 0) return 0.0;
@@ -206,14 +540,8 @@ public class Product {
         //return total - cheapest;
     //a}
 
-    public String getStockStatus() {
-        if (quantity == 0) {
-            return "OUT_OF_STOCK";
-        } else if (quantity >= 1 && quantity <= 10) {
-            return "LOW";
-        } else {
-            return "IN_STOCK";
-        }
+    public StockStatus getStockStatus() {
+        return StockStatus.of(getQuantity());
     }
 
     public void displayProductInfo() {
@@ -221,23 +549,34 @@ public class Product {
         System.out.println("ID: " + id);
         System.out.println("Name: " + name);
         System.out.println("Description: " + description);
-        System.out.println("Price: $" + price);
-        System.out.println("Quantity: " + quantity);
+        System.out.println("Price: $" + getPrice());
+        System.out.println("Quantity: " + getQuantity());
         System.out.println("Stock Status: " + getStockStatus());
         System.out.println("Category: " + (category != null ? category.getName() : "No category"));
         System.out.println("Total Stock Value: $" + calculateTotalValue());
         System.out.println();
     }
 
+    /**
+     * @return the unique creation sequence number: 1, 2, 3, ... in creation order
+     *         across all threads, with no gaps
+     */
+    public long getSeq() { return seq; }
+
     public String getId() { return id; }
 
     public String getName() { return name; }
 
     public String getDescription() { return description; }
 
-    public double getPrice() { return price; }
+    public double getPrice() { return STORE.price(row); }
+
+    /**
+     * @return the price in Money minor units (rounded once, when the price was set)
+     */
+    public long getPriceMinor() { return STORE.priceMinor(row); }
 
-    public int getQuantity() { return quantity; }
+    public int getQuantity() { return STORE.quantity(row); }
 
     public Category getCategory() { return category; }
 
@@ -247,8 +586,8 @@ public class Product {
                "id='" + id + '\'' +
                ", name='" + name + '\'' +
                ", description='" + description + '\'' +
-               ", price=" + price + " " + DEFAULT_CURRENCY +
-               ", quantity=" + quantity +
+               ", price=" + getPrice() + " " + DEFAULT_CURRENCY +
+               ", quantity=" + getQuantity() +
                ", stockStatus='" + getStockStatus() + '\'' +
                ", category=" + (category != null ? category.getName() : "None") +
                '}';
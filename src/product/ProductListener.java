@@ -0,0 +1,47 @@
+package product;
+
+import category.Category;
+
+/**
+ * Receives product changes, e.g. to keep an index or a cached response in
+ * step with the catalog. Register with Product.registry().addListener().
+ *
+ * Callbacks run synchronously on the thread that made the change, possibly
+ * several threads at once, so they must be quick and thread-safe.
+ * Price, stock and category events run while the thread holds the product's
+ * lock, so one product's events arrive in the order its changes were made.
+ */
+public interface ProductListener {
+
+    /**
+     * A product was created. Called from its constructor, so the initial id,
+     * name, price etc. arrive as the change events that follow.
+     */
+    default void productRegistered(Product p) {
+    }
+
+    default void priceChanged(Product p, double oldPrice, double newPrice) {
+    }
+
+    default void quantityChanged(Product p, int oldQuantity, int newQuantity) {
+    }
+
+    /**
+     * The id, name, description or a subclass attribute (weight, dimensions,
+     * shipping policy, download size...) changed.
+     */
+    default void detailsChanged(Product p) {
+    }
+
+    default void categoryChanged(Product p, Category oldCategory, Category newCategory) {
+    }
+
+    /**
+     * A stock change moved the product to another StockStatus, e.g.
+     * IN_STOCK to LOW or LOW to OUT_OF_STOCK. Comes right after the
+     * quantityChanged that caused it. Replenishment jobs subscribe here instead
+     * of polling the catalog; anything slow should be handed to another thread.
+     */
+    default void stockStatusChanged(Product p, StockStatus oldStatus, StockStatus newStatus) {
+    }
+}
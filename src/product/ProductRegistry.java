@@ -0,0 +1,318 @@
+package product;
+
+import category.Category;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registry of every product created in the shop.
+ * Keeps a hash index from product id to product, so id uniqueness checks
+ * and lookups by id are O(1) instead of a scan over all products.
+ * Safe to use from parallel import threads.
+ * Also dispatches change events to the registered ProductListeners.
+ *
+ * Products restored from a CatalogSnapshot are not put into the maps: the
+ * registry asks a Loader for them and builds each one the first time it is
+ * looked up or listed. Restoring fires no productRegistered events.
+ */
+public class ProductRegistry {
+    /**
+     * Products restored at rows 0..rows()-1 (sequence numbers 1..rows()),
+     * built on demand.
+     */
+    interface Loader {
+        int rows();
+
+        boolean exists(int row);
+
+        /** Builds the product at the row, or returns null if there is none. No side effects. */
+        Product load(int row);
+
+        /** @return the row of the product that had this id when it was saved, or -1 */
+        int rowOf(String id);
+    }
+
+    private record Restored(Loader loader, AtomicReferenceArray<Product> built) {}
+
+    private final Map<String, Product> byId = new ConcurrentHashMap<>();
+    private final NavigableMap<Long, Product> bySeq = new ConcurrentSkipListMap<>();
+    private final LongAdder count = new LongAdder();
+    private volatile Restored restored;
+    // copy-on-write: read on every product change, written only when listeners come and go
+    private volatile ProductListener[] listeners = new ProductListener[0];
+
+    /**
+     * Adds a product to the registry under its current id.
+     * If another product already owns that id, the product is still listed
+     * but the id keeps pointing to the first owner.
+     * @return false if the product was already registered
+     */
+    boolean register(Product product) {
+        Restored r = restored;
+        if (r != null && product.getSeq() <= r.loader().rows()) {
+            return false;
+        }
+        if (bySeq.putIfAbsent(product.getSeq(), product) != null) {
+            return false;
+        }
+        count.increment();
+        if (product.getId() != null) {
+            byId.putIfAbsent(product.getId(), product);
+        }
+        for (ProductListener l : listeners) {
+            l.productRegistered(product);
+        }
+        return true;
+    }
+
+    /**
+     * Moves a product from its old id to a new one.
+     * @return false if the new id is already taken
+     */
+    boolean rename(Product product, String oldId, String newId) {
+        if (findRestored(newId) != null || byId.putIfAbsent(newId, product) != null) {
+            return false;
+        }
+        if (oldId != null) {
+            byId.remove(oldId, product);
+        }
+        return true;
+    }
+
+    /**
+     * Registers a batch of products, e.g. ones restored by a catalog loader.
+     * Products that are already registered are skipped, so this is safe to
+     * call with products that were created through the Product constructors.
+     * @return the number of newly registered products
+     */
+    public int registerAll(Collection<? extends Product> batch) {
+        int added = 0;
+        for (Product p : batch) {
+            if (p != null && register(p)) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Makes the loader's products part of the registry. Only allowed while
+     * the registry is empty, as the restored products take sequence numbers
+     * 1..loader.rows().
+     * @param productCount the number of rows that hold a product
+     */
+    synchronized void restore(Loader loader, int productCount) {
+        if (restored != null || count.sum() != 0) {
+            throw new IllegalStateException("Products can only be restored into an empty registry");
+        }
+        count.add(productCount);
+        restored = new Restored(loader, new AtomicReferenceArray<>(loader.rows()));
+    }
+
+    // The restored product at the row, built on first use; null if the row is empty
+    private Product restoredProduct(Restored r, int row) {
+        Product p = r.built().get(row);
+        if (p != null) {
+            return p;
+        }
+        Product loaded = r.loader().load(row);
+        if (loaded == null) {
+            return null;
+        }
+        // Published under the category's lock, so it is listed there before anyone can see it
+        Category category = loaded.getCategory();
+        boolean published = category != null
+                ? category.restoreProduct(loaded, () -> r.built().compareAndSet(row, null, loaded))
+                : r.built().compareAndSet(row, null, loaded);
+        return published ? loaded : r.built().get(row); // or the one another thread built meanwhile
+    }
+
+    // The restored product that still has this id, if any
+    private Product findRestored(String id) {
+        Restored r = restored;
+        if (r == null) {
+            return null;
+        }
+        int row = r.loader().rowOf(id);
+        if (row < 0) {
+            return null;
+        }
+        Product p = restoredProduct(r, row);
+        return p != null && id.equals(p.getId()) ? p : null;
+    }
+
+    public boolean containsId(String id) {
+        return id != null && (byId.containsKey(id) || findRestored(id) != null);
+    }
+
+    /**
+     * @return the product with the given id, or null if there is none
+     */
+    public Product findById(String id) {
+        if (id == null) {
+            return null;
+        }
+        String key = id.trim();
+        Product p = byId.get(key);
+        return p != null ? p : findRestored(key);
+    }
+
+    public int size() {
+        return count.intValue();
+    }
+
+    /**
+     * @return read-only view of all products, ordered by creation sequence
+     */
+    public Collection<Product> getAll() {
+        return getAllAfter(0);
+    }
+
+    /**
+     * Products created after the one with the given sequence number, in
+     * creation order; 0 gives all of them. Used to resume a listing from
+     * a cursor: products created meanwhile are appended at the end, so
+     * pages never skip or repeat a product.
+     */
+    public Collection<Product> getAllAfter(long seq) {
+        Restored r = restored;
+        if (r == null) {
+            return Collections.unmodifiableCollection(bySeq.tailMap(seq, false).values());
+        }
+        int rows = r.loader().rows();
+        Collection<Product> created = Collections.unmodifiableCollection(bySeq.tailMap(Math.max(seq, rows), false).values());
+        if (seq >= rows) {
+            return created;
+        }
+        return new RestoredListing(r, (int) Math.max(seq, 0), created);
+    }
+
+    // Restored products from row 'from' on, built as the iteration reaches
+    // them, followed by the products created since
+    private final class RestoredListing extends AbstractCollection<Product> {
+        private final Restored restored;
+        private final int from;
+        private final Collection<Product> created;
+
+        RestoredListing(Restored restored, int from, Collection<Product> created) {
+            this.restored = restored;
+            this.from = from;
+            this.created = created;
+        }
+
+        @Override
+        public Iterator<Product> iterator() {
+            return new Iterator<>() {
+                private int row = from;
+                private Iterator<Product> rest;
+                private Product next = advance();
+
+                private Product advance() {
+                    int rows = restored.loader().rows();
+                    while (row < rows) {
+                        Product p = restoredProduct(restored, row++);
+                        if (p != null) {
+                            return p;
+                        }
+                    }
+                    if (rest == null) {
+                        rest = created.iterator();
+                    }
+                    return rest.hasNext() ? rest.next() : null;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return next != null;
+                }
+
+                @Override
+                public Product next() {
+                    if (next == null) {
+                        throw new NoSuchElementException();
+                    }
+                    Product p = next;
+                    next = advance();
+                    return p;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            int size = created.size();
+            for (int row = from, rows = restored.loader().rows(); row < rows; row++) {
+                if (restored.loader().exists(row)) {
+                    size++;
+                }
+            }
+            return size;
+        }
+    }
+
+    // ----- change events -----
+
+    public synchronized void addListener(ProductListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener must not be null");
+        }
+        ProductListener[] next = Arrays.copyOf(listeners, listeners.length + 1);
+        next[next.length - 1] = listener;
+        listeners = next;
+    }
+
+    public synchronized boolean removeListener(ProductListener listener) {
+        ProductListener[] current = listeners;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == listener) {
+                ProductListener[] next = new ProductListener[current.length - 1];
+                System.arraycopy(current, 0, next, 0, i);
+                System.arraycopy(current, i + 1, next, i, current.length - i - 1);
+                listeners = next;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void firePriceChanged(Product p, double oldPrice, double newPrice) {
+        for (ProductListener l : listeners) {
+            l.priceChanged(p, oldPrice, newPrice);
+        }
+    }
+
+    void fireQuantityChanged(Product p, int oldQuantity, int newQuantity) {
+        for (ProductListener l : listeners) {
+            l.quantityChanged(p, oldQuantity, newQuantity);
+        }
+    }
+
+    void fireStockStatusChanged(Product p, StockStatus oldStatus, StockStatus newStatus) {
+        for (ProductListener l : listeners) {
+            l.stockStatusChanged(p, oldStatus, newStatus);
+        }
+    }
+
+    void fireDetailsChanged(Product p) {
+        for (ProductListener l : listeners) {
+            l.detailsChanged(p);
+        }
+    }
+
+    void fireCategoryChanged(Product p, Category oldCategory, Category newCategory) {
+        for (ProductListener l : listeners) {
+            l.categoryChanged(p, oldCategory, newCategory);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package product;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Column-oriented storage for the numeric fields of every product.
+ * Prices, quantities, weights and category ordinals are kept in primitive
+ * arrays (struct-of-arrays), and a Product is a view over one row.
+ * Catalog-wide aggregates are then tight loops over the arrays instead of
+ * walking millions of Product objects.
+ *
+ * Rows live in fixed-size chunks that are never moved, so a row never changes
+ * place once allocated. A product's row is its sequence number minus one.
+ * Rows are handed out from one counter, so they stay dense however many
+ * threads create products, and the chunks (and every index keyed by row)
+ * grow with the product count alone.
+ * Rows that were never used have kind KIND_NONE and are skipped by the aggregates.
+ */
+public final class ProductStore {
+    public static final byte KIND_NONE = 0;
+    public static final byte KIND_PLAIN = 1;
+    public static final byte KIND_PHYSICAL = 2;
+    public static final byte KIND_DIGITAL = 3;
+    public static final int NO_CATEGORY = -1;
+
+    private static final int CHUNK_BITS = 14;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private static final class Chunk {
+        final double[] prices = new double[CHUNK_SIZE];
+        final long[] pricesMinor = new long[CHUNK_SIZE]; // same price in Money minor units
+        final int[] quantities = new int[CHUNK_SIZE];
+        final double[] weights = new double[CHUNK_SIZE];
+        final int[] categories = new int[CHUNK_SIZE];
+        final byte[] kinds = new byte[CHUNK_SIZE];
+
+        Chunk() {
+            Arrays.fill(categories, NO_CATEGORY);
+        }
+    }
+
+    // Copy-on-write: a new array is published every time a chunk is added
+    private volatile Chunk[] chunks = new Chunk[0];
+    private final AtomicInteger nextRow = new AtomicInteger();
+
+    ProductStore() {
+    }
+
+    /**
+     * Claims the next free row for a new product. Chunks are created on demand.
+     * @return the row
+     */
+    int allocate(byte kind) {
+        int row = nextRow.getAndIncrement();
+        if (row < 0) {
+            nextRow.set(Integer.MIN_VALUE); // stays exhausted
+            throw new IllegalStateException("Product store is full");
+        }
+        chunkFor(row).kinds[row & CHUNK_MASK] = kind;
+        return row;
+    }
+
+    private Chunk chunkFor(int row) {
+        int index = row >>> CHUNK_BITS;
+        Chunk[] current = chunks;
+        if (index < current.length && current[index] != null) {
+            return current[index];
+        }
+        synchronized (this) {
+            current = chunks;
+            if (index >= current.length) {
+                current = Arrays.copyOf(current, Math.max(index + 1, current.length * 2));
+            } else {
+                current = current.clone();
+            }
+            if (current[index] == null) {
+                current[index] = new Chunk();
+            }
+            chunks = current;
+            return current[index];
+        }
+    }
+
+    /**
+     * Fills rows 0..rowCount-1 from the columns of a snapshot, a chunk-sized
+     * bulk copy per column. Category columns hold snapshot indexes, mapped
+     * through 'categoryOrdinals' (-1: no category).
+     */
+    void restore(int rowCount, ByteBuffer kinds, DoubleBuffer prices, LongBuffer pricesMinor,
+                 IntBuffer quantities, DoubleBuffer weights, IntBuffer categories, int[] categoryOrdinals) {
+        nextRow.accumulateAndGet(rowCount, Math::max);
+        for (int base = 0; base < rowCount; base += CHUNK_SIZE) {
+            Chunk c = chunkFor(base);
+            int length = Math.min(CHUNK_SIZE, rowCount - base);
+            kinds.get(base, c.kinds, 0, length);
+            prices.get(base, c.prices, 0, length);
+            pricesMinor.get(base, c.pricesMinor, 0, length);
+            quantities.get(base, c.quantities, 0, length);
+            weights.get(base, c.weights, 0, length);
+            categories.get(base, c.categories, 0, length);
+            for (int i = 0; i < length; i++) {
+                int index = c.categories[i];
+                c.categories[i] = index >= 0 ? categoryOrdinals[index] : NO_CATEGORY;
+            }
+        }
+        // Publish the filled chunks to other threads: a volatile write after the copies
+        synchronized (this) {
+            Chunk[] filled = chunks;
+            chunks = filled;
+        }
+    }
+
+    private Chunk chunk(int row) {
+        return chunks[row >>> CHUNK_BITS];
+    }
+
+    // ----- row accessors -----
+
+    double price(int row) {
+        return chunk(row).prices[row & CHUNK_MASK];
+    }
+
+    long priceMinor(int row) {
+        return chunk(row).pricesMinor[row & CHUNK_MASK];
+    }
+
+    void setPrice(int row, double price, long priceMinor) {
+        Chunk c = chunk(row);
+        c.prices[row & CHUNK_MASK] = price;
+        c.pricesMinor[row & CHUNK_MASK] = priceMinor;
+    }
+
+    int quantity(int row) {
+        return (int) INTS.getVolatile(chunk(row).quantities, row & CHUNK_MASK);
+    }
+
+    // Written under the product's lock; volatile, so readers without it see every update
+    void setQuantity(int row, int quantity) {
+        INTS.setVolatile(chunk(row).quantities, row & CHUNK_MASK, quantity);
+    }
+
+    double weight(int row) {
+        return chunk(row).weights[row & CHUNK_MASK];
+    }
+
+    void setWeight(int row, double weightKg) {
+        chunk(row).weights[row & CHUNK_MASK] = weightKg;
+    }
+
+    void setCategory(int row, int categoryOrdinal) {
+        chunk(row).categories[row & CHUNK_MASK] = categoryOrdinal;
+    }
+
+    // ----- aggregates -----
+
+    /**
+     * @return sum of price * quantity over the whole catalog
+     */
+    public double totalValue() {
+        double total = 0;
+        for (Chunk c : chunks) {
+            if (c == null) continue;
+            double[] prices = c.prices;
+            int[] quantities = c.quantities;
+            for (int i = 0; i < CHUNK_SIZE; i++) {
+                total += prices[i] * quantities[i];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Exact catalog valuation in Money minor units.
+     * @throws ArithmeticException on overflow
+     */
+    public long totalValueMinor() {
+        long total = 0;
+        for (Chunk c : chunks) {
+            if (c == null) continue;
+            long[] prices = c.pricesMinor;
+            int[] quantities = c.quantities;
+            for (int i = 0; i < CHUNK_SIZE; i++) {
+                total = Math.addExact(total, prices[i] * quantities[i]);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @return sum of price * quantity over products of the given category
+     */
+    public double totalValue(int categoryOrdinal) {
+        double total = 0;
+        for (Chunk c : chunks) {
+            if (c == null) continue;
+            double[] prices = c.prices;
+            int[] quantities = c.quantities;
+            int[] categories = c.categories;
+            for (int i = 0; i < CHUNK_SIZE; i++) {
+                // branch-free: non-matching rows contribute 0
+                total += categories[i] == categoryOrdinal ? prices[i] * quantities[i] : 0.0;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Totals for every category in a single pass.
+     * @param categoryCount number of category ordinals to report
+     * @return array indexed by category ordinal
+     */
+    public double[] totalValueByCategory(int categoryCount) {
+        double[] totals = new double[categoryCount];
+        for (Chunk c : chunks) {
+            if (c == null) continue;
+            for (int i = 0; i < CHUNK_SIZE; i++) {
+                int category = c.categories[i];
+                if (category >= 0 && category < categoryCount) {
+                    totals[category] += c.prices[i] * c.quantities[i];
+                }
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * @return total weight in kg of all physical stock (weight * quantity)
+     */
+    public double totalWeightKg() {
+        double total = 0;
+        for (Chunk c : chunks) {
+            if (c == null) continue;
+            double[] weights = c.weights;
+            int[] quantities = c.quantities;
+            for (int i = 0; i < CHUNK_SIZE; i++) {
+                total += weights[i] * quantities[i];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Counts products per stock status by scanning the quantities, using the
+     * same buckets as StockStatus.of(). Product.stockCounts() keeps the same
+     * numbers live; this recount is there to check them against.
+     * @return counts indexed by StockStatus ordinal
+     */
+    public int[] countByStockStatus() {
+        int out = 0;
+        int low = 0;
+        int live = 0;
+        for (Chunk c : chunks) {
+            if (c == null) continue;
+            int[] quantities = c.quantities;
+            byte[] kinds = c.kinds;
+            for (int i = 0; i < CHUNK_SIZE; i++) {
+                int isLive = kinds[i] != KIND_NONE ? 1 : 0;
+                int q = quantities[i];
+                live += isLive;
+                out += isLive & (q == 0 ? 1 : 0);
+                low += isLive & (q >= 1 && q <= StockStatus.LOW_THRESHOLD ? 1 : 0);
+            }
+        }
+        return new int[]{out, low, live - out - low};
+    }
+
+    /**
+     * Same recount for the products of one category, to check
+     * Product.stockCounts().count(category, status) against.
+     * @return counts indexed by StockStatus ordinal
+     */
+    public int[] countByStockStatus(int categoryOrdinal) {
+        int[] counts = new int[StockStatus.values().length];
+        for (Chunk c : chunks) {
+            if (c == null) continue;
+            for (int i = 0; i < CHUNK_SIZE; i++) {
+                if (c.kinds[i] != KIND_NONE && c.categories[i] == categoryOrdinal) {
+                    counts[StockStatus.of(c.quantities[i]).ordinal()]++;
+                }
+            }
+        }
+        return counts;
+    }
+}
@@ -1,5 +1,6 @@
 package product;
 
+import cart.Cart;
 import product.pricing.*;
 import product.pricing.PricePolicy;
 import product.shipping.*;
@@ -152,31 +153,32 @@ public class ShopDemo6 {
 
     /**
      * A generic method to demonstrate full price calculation.
+     * The Cart runs the whole promotion -> tax -> shipping pipeline in one pass.
      */
     private static void demonstrateFullPrice(Product product, int qty, List<PricePolicy> policies, TaxPolicy tax) {
         System.out.println("Product: " + product.getName() + ", Quantity: " + qty);
-        
-        // 1. Apply best promotion from the list
-        double subtotal = product.finalPrice(qty, policies);
+
+        Cart cart = new Cart(policies, tax);
+        cart.add(product, qty);
+
+        // 1. Best promotion from the list
+        double subtotal = cart.getSubtotal();
         System.out.printf("\n1. Subtotal after best promotion: %.2f KZT\n", subtotal);
 
-        // 2. Extract shipping cost if applicable
-        double shippingCost = 0;
-        if (product instanceof Shippable) {
-            shippingCost = ((Shippable) product).getShippingCost();
-        }
+        // 2. Shipping cost if applicable
+        double shippingCost = cart.getShippingTotal();
         double taxableAmount = subtotal; // Tax is not applied on shipping
         System.out.printf("2. Taxable amount (subtotal): %.2f KZT\n", taxableAmount);
 
-        // 3. Calculate tax
-        double taxAmount = tax.calculateTax(product, taxableAmount);
+        // 3. Tax
+        double taxAmount = cart.getTaxTotal();
         System.out.printf("3. Tax (%s): %.2f KZT\n", tax.name(), taxAmount);
 
         // 4. Shipping cost
         System.out.printf("4. Shipping Cost: %.2f KZT\n", shippingCost);
 
         // 5. Final price
-        double finalTotal = taxableAmount + taxAmount + shippingCost;
+        double finalTotal = cart.getTotal();
         System.out.printf("\n5. FINAL TOTAL: %.2f KZT\n", finalTotal);
         System.out.println("   (Taxable: " + String.format("%.2f", taxableAmount) +
                          " + Tax: " + String.format("%.2f", taxAmount) +
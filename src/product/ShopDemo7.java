@@ -0,0 +1,78 @@
+package product;
+
+import category.Category;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * ShopDemo7 - Live stock counts under concurrency
+ *
+ * Several threads sell, restock and reprice a handful of products and move
+ * them between two categories at the same time. Afterwards the live counts
+ * (Product.stockCounts()) and each category's running total are compared
+ * with a recount from the product store. Exits with status 1 on a mismatch.
+ */
+public class ShopDemo7 {
+    private static final int THREADS = 8;
+    private static final int OPERATIONS = 200_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        System.out.println("=== Stock Counts Under Concurrency ===\n");
+
+        Category a = new Category(71, "A", "First category");
+        Category b = new Category(72, "B", "Second category");
+        Product[] products = new Product[8];
+        for (int i = 0; i < products.length; i++) {
+            products[i] = new Product("SC" + i, "Product " + i, null, 100 + i, 10, i % 2 == 0 ? a : b);
+        }
+
+        CountDownLatch start = new CountDownLatch(1); // so the threads really overlap
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            Random random = new Random(t);
+            threads.add(Thread.ofPlatform().start(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < OPERATIONS; i++) {
+                    Product p = products[random.nextInt(products.length)];
+                    switch (random.nextInt(5)) {
+                        case 0, 1 -> p.sellProduct(1 + random.nextInt(4));
+                        case 2 -> p.addStock(1 + random.nextInt(6));
+                        case 3 -> p.trySetPrice(1 + random.nextInt(1000));
+                        default -> (random.nextBoolean() ? a : b).addProduct(p);
+                    }
+                }
+            }));
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        boolean ok = true;
+        for (Category c : List.of(a, b)) {
+            int[] recount = Product.store().countByStockStatus(c.getOrdinal());
+            System.out.println("Category " + c.getName() + " (" + c.getProductCount() + " products):");
+            for (StockStatus status : StockStatus.values()) {
+                long live = Product.stockCounts().count(c, status);
+                System.out.println("   " + status + ": counted " + live + ", actual " + recount[status.ordinal()]);
+                ok &= live == recount[status.ordinal()];
+            }
+            double total = c.getTotalValue();
+            double actual = Product.store().totalValue(c.getOrdinal());
+            System.out.printf("   Total value: %.2f, actual %.2f%n", total, actual);
+            ok &= Math.abs(total - actual) <= 1e-6 * Math.max(1.0, Math.abs(actual));
+        }
+        System.out.println();
+        System.out.println(ok ? "=== Counts match ===" : "=== MISMATCH ===");
+        if (!ok) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package product;
+
+import cart.Cart;
+import product.pricing.BogoHalfPromotion;
+import product.pricing.PercentagePromotion;
+import product.pricing.PolicySet;
+import product.pricing.PriceQuoteCache;
+import product.tax.FlatVat;
+
+import java.util.List;
+
+/**
+ * ShopDemo8 - Cached line prices
+ *
+ * Two carts price the same lines through one PriceQuoteCache, as checkouts
+ * do. After each change that must invalidate a quote (trySetPrice,
+ * applyDiscount, a new rule in the PolicySet) every line price is compared
+ * with product.finalPrice(qty, rules) computed directly.
+ * Exits with status 1 on a mismatch.
+ */
+public class ShopDemo8 {
+
+    public static void main(String[] args) {
+        System.out.println("=== Cached Line Prices ===\n");
+
+        Product[] products = {
+                new Product("QC1", "Notebook", 1200),
+                new PhysicalProduct("QC2", "Lamp", 8500, 1.4, null),
+                new DigitalProduct("QC3", "E-book", 3000, 12),
+        };
+        PolicySet rules = new PolicySet(List.of(new PercentagePromotion(10)));
+        PriceQuoteCache quotes = new PriceQuoteCache(64);
+
+        boolean ok = check("First cart", products, rules, quotes);
+        ok &= check("Second cart", products, rules, quotes);
+        System.out.println("   Cache: " + quotes.getHits() + " hits, " + quotes.getMisses() + " misses\n");
+        ok &= quotes.getHits() > 0;
+
+        products[0].trySetPrice(1500);
+        ok &= check("After trySetPrice", products, rules, quotes);
+
+        products[1].applyDiscount(20);
+        ok &= check("After applyDiscount", products, rules, quotes);
+
+        rules.add(new BogoHalfPromotion());
+        ok &= check("After a new rule", products, rules, quotes);
+
+        System.out.println("   Cache: " + quotes.getHits() + " hits, " + quotes.getMisses() + " misses\n");
+        System.out.println(ok ? "=== Prices match ===" : "=== MISMATCH ===");
+        if (!ok) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean check(String title, Product[] products, PolicySet rules, PriceQuoteCache quotes) {
+        Cart cart = new Cart(List.of(), new FlatVat(0.12));
+        cart.setPromotions(rules, quotes);
+        for (int i = 0; i < products.length; i++) {
+            cart.add(products[i], i + 2); // priced one line at a time
+        }
+        System.out.println(title + ":");
+        boolean ok = matches(cart, rules);
+        cart.reprice(); // and all lines in one pass
+        return matches(cart, rules) && ok;
+    }
+
+    private static boolean matches(Cart cart, PolicySet rules) {
+        boolean ok = true;
+        for (int line = 0; line < cart.size(); line++) {
+            Product p = cart.getProduct(line);
+            double expected = p.finalPrice(cart.getQuantity(line), rules.asList());
+            double cached = cart.getLineSubtotal(line);
+            System.out.printf("   %s x%d: %.2f (expected %.2f)%n", p.getName(), cart.getQuantity(line), cached, expected);
+            ok &= Double.compare(cached, expected) == 0;
+        }
+        return ok;
+    }
+}
@@ -0,0 +1,121 @@
+package product;
+
+import category.Category;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live number of products in each StockStatus, in the whole catalog and per
+ * category, so "how many products are LOW" is a read instead of a scan.
+ *
+ * Products report every status change as it happens (see Product), and the
+ * counters are LongAdders: each one is striped over cells that concurrent
+ * threads update without contending, and only a read sums the cells.
+ */
+public final class StockCounts {
+    private static final int STATUSES = StockStatus.values().length;
+
+    private final LongAdder[] total = newCounters();
+    // [category ordinal][status]; copy-on-write when a new category shows up
+    private volatile LongAdder[][] byCategory = new LongAdder[0][];
+
+    StockCounts() {
+    }
+
+    private static LongAdder[] newCounters() {
+        LongAdder[] counters = new LongAdder[STATUSES];
+        for (int i = 0; i < STATUSES; i++) {
+            counters[i] = new LongAdder();
+        }
+        return counters;
+    }
+
+    // ----- updates, from Product -----
+
+    void added(Category category, StockStatus status) {
+        total[status.ordinal()].increment();
+        if (category != null) {
+            countersOf(category)[status.ordinal()].increment();
+        }
+    }
+
+    // 'count' products restored in bulk, e.g. from a snapshot
+    void restored(Category category, StockStatus status, long count) {
+        total[status.ordinal()].add(count);
+        if (category != null) {
+            countersOf(category)[status.ordinal()].add(count);
+        }
+    }
+
+    void moved(Category category, StockStatus from, StockStatus to) {
+        total[from.ordinal()].decrement();
+        total[to.ordinal()].increment();
+        if (category != null) {
+            LongAdder[] counters = countersOf(category);
+            counters[from.ordinal()].decrement();
+            counters[to.ordinal()].increment();
+        }
+    }
+
+    void recategorized(Category from, Category to, StockStatus status) {
+        if (from != null) {
+            countersOf(from)[status.ordinal()].decrement();
+        }
+        if (to != null) {
+            countersOf(to)[status.ordinal()].increment();
+        }
+    }
+
+    private LongAdder[] countersOf(Category category) {
+        int ordinal = category.getOrdinal();
+        LongAdder[][] current = byCategory;
+        if (ordinal < current.length && current[ordinal] != null) {
+            return current[ordinal];
+        }
+        return grow(ordinal);
+    }
+
+    private synchronized LongAdder[] grow(int ordinal) {
+        LongAdder[][] current = byCategory;
+        if (ordinal < current.length && current[ordinal] != null) {
+            return current[ordinal];
+        }
+        LongAdder[][] next = Arrays.copyOf(current, Math.max(current.length, Math.max(ordinal + 1, Category.getCount())));
+        next[ordinal] = newCounters();
+        byCategory = next;
+        return next[ordinal];
+    }
+
+    // ----- reads -----
+
+    /**
+     * @return products in the catalog with the given status
+     */
+    public long count(StockStatus status) {
+        return total[status.ordinal()].sum();
+    }
+
+    /**
+     * @return products in the category with the given status
+     */
+    public long count(Category category, StockStatus status) {
+        int ordinal = category.getOrdinal();
+        LongAdder[][] current = byCategory;
+        if (ordinal >= current.length || current[ordinal] == null) {
+            return 0;
+        }
+        return current[ordinal][status.ordinal()].sum();
+    }
+
+    /**
+     * @return catalog counts indexed by StockStatus ordinal
+     */
+    public long[] counts() {
+        long[] counts = new long[STATUSES];
+        for (int i = 0; i < STATUSES; i++) {
+            counts[i] = total[i].sum();
+        }
+        return counts;
+    }
+}
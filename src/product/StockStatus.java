@@ -0,0 +1,31 @@
+package product;
+
+/**
+ * Stock level bucket of a product, derived from its quantity.
+ * A product moves between them only on inventory changes; ProductListeners
+ * hear about every move through stockStatusChanged.
+ */
+public enum StockStatus {
+    OUT_OF_STOCK,
+    LOW,
+    IN_STOCK;
+
+    /** Highest quantity that still counts as LOW. */
+    public static final int LOW_THRESHOLD = 10;
+
+    private static final StockStatus[] VALUES = values();
+
+    public static StockStatus of(int quantity) {
+        if (quantity == 0) {
+            return OUT_OF_STOCK;
+        }
+        return quantity <= LOW_THRESHOLD ? LOW : IN_STOCK;
+    }
+
+    /**
+     * Same as values()[ordinal], without copying the array.
+     */
+    public static StockStatus ofOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+}
@@ -0,0 +1,439 @@
+package product.persistence;
+
+import product.Product;
+import product.ProductListener;
+import product.ProductRegistry;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Write-ahead log of stock and price changes, so sales, restocks, price
+ * edits and discounts survive a restart. Products themselves (ids, names,
+ * categories) come from the catalog the log is replayed onto; the log only
+ * carries what changes between restarts.
+ *
+ * Every quantity change is logged as a delta and every price change as the
+ * new price. Deltas add up the same in any order, so concurrent sales of
+ * one product need no ordering between their records. Prices do: a product
+ * reports its changes under its own lock (see ProductListener), so its
+ * records are appended in the order its prices were set, and replay ends
+ * on the price the product ended with.
+ *
+ * File layout (little-endian):
+ *   int  magic ('MLOG')
+ *   int  format version (2)
+ *   long log id, chosen at random when the file is created
+ *   then records:
+ *   int  body length
+ *   int  CRC32C of the body
+ *   body: byte type, then an int quantity delta (QUANTITY) or a double price (PRICE),
+ *         then the product id in UTF-8 (the rest of the body)
+ *
+ * Records are buffered in memory by the listener callbacks and reach the
+ * disk on sync(). sync() is a group commit: while one caller writes and
+ * fsyncs, the others queue up behind it, and the next flush writes all of
+ * their records with a single fsync. Concurrent checkouts thus share fsyncs
+ * instead of paying one each.
+ *
+ * Once a write or fsync has failed the log stays failed: sync() throws,
+ * and changes made after that are only counted (getLostCount()), as they can
+ * no longer reach the file. Callers check isFailed() to stop taking changes.
+ *
+ * open() replays the file before it starts listening, so replayed changes
+ * are not logged again. A record cut short by a crash (or failing its
+ * checksum) ends the log: it and anything after it are dropped.
+ *
+ * A catalog snapshot records the log's id and getSyncedOffset() when it is
+ * written; opening the same log with that position replays only the
+ * changes made after the snapshot.
+ */
+public final class MutationLog implements ProductListener, Closeable {
+    private static final int MAGIC = 0x474F4C4D; // "MLOG" read as little-endian
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 16;
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final int MAX_BODY_BYTES = 1 << 20;
+    // a buffer this full is flushed by the listener itself, so memory stays bounded without sync() calls
+    private static final int FLUSH_THRESHOLD = 1 << 20;
+
+    static final byte QUANTITY = 1;
+    static final byte PRICE = 2;
+
+    private final ProductRegistry registry;
+    private final FileChannel channel;
+
+    private long id;
+    private long start; // file offset of the first record appended since open
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushed = lock.newCondition();
+    private ByteBuffer pending = newBuffer(1 << 16); // records not yet handed to the file
+    private ByteBuffer spare = newBuffer(1 << 16);   // null while a flush writes it
+    private final CRC32C crc = new CRC32C(); // used by replay, then by append under the lock
+    private long appended;  // bytes appended since open
+    private long durable;   // bytes of those known to be on disk
+    private boolean flushing;
+    private IOException failure;
+    private long lost; // changes dropped because the log had failed
+
+    private long replayed;
+    private long skipped;
+
+    private MutationLog(ProductRegistry registry, FileChannel channel) {
+        this.registry = registry;
+        this.channel = channel;
+    }
+
+    /**
+     * Opens (or creates) a log file, applies the changes it holds to the
+     * registry's products and logs every change from then on.
+     * Changes to products that are not in the registry are skipped.
+     */
+    public static MutationLog open(Path file, ProductRegistry registry) throws IOException {
+        return open(file, registry, 0, 0);
+    }
+
+    /**
+     * Like open(file, registry), but if the file is the log with id 'logId',
+     * replay starts at 'offset': the position a snapshot recorded with
+     * getId() and getSyncedOffset(). Any other log is replayed in full.
+     * @throws IllegalArgumentException if the log is shorter than 'offset'
+     */
+    public static MutationLog open(Path file, ProductRegistry registry, long logId, long offset) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MutationLog log = new MutationLog(registry, channel);
+            if (channel.size() == 0) {
+                long id;
+                do {
+                    id = ThreadLocalRandom.current().nextLong();
+                } while (id == 0); // 0 stands for "no log" in a snapshot
+                ByteBuffer header = newBuffer(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).putLong(id).flip();
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+                channel.force(false);
+                log.id = id;
+            } else {
+                long end = log.replay(logId, offset);
+                if (end < channel.size()) {
+                    channel.truncate(end);
+                }
+            }
+            log.start = channel.size();
+            channel.position(log.start);
+            registry.addListener(log);
+            return log;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static ByteBuffer newBuffer(int capacity) {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // ----- replay -----
+
+    // Applies every intact record, from 'offset' on if this is the log 'logId';
+    // returns the file offset just past the last one
+    private long replay(long logId, long offset) throws IOException {
+        ByteBuffer buffer = newBuffer(1 << 16).limit(0);
+        channel.position(0);
+        readFully(buffer, HEADER_BYTES);
+        if (buffer.limit() < 8 || buffer.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a mutation log file");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Unsupported mutation log version: " + buffer.getInt(4));
+        }
+        if (buffer.limit() < HEADER_BYTES) {
+            throw new IllegalArgumentException("Mutation log header is truncated");
+        }
+        id = buffer.getLong(8);
+        long end = HEADER_BYTES;
+        if (id == logId && offset > HEADER_BYTES) {
+            if (offset > channel.size()) {
+                throw new IllegalArgumentException("Mutation log ends before the snapshot's position: "
+                        + channel.size() + " < " + offset);
+            }
+            channel.position(offset);
+            buffer.clear().limit(0);
+            end = offset;
+        } else {
+            buffer.position(HEADER_BYTES);
+        }
+        while (true) {
+            if (buffer.remaining() < RECORD_HEADER_BYTES) {
+                buffer = refill(buffer, RECORD_HEADER_BYTES);
+                if (buffer.remaining() < RECORD_HEADER_BYTES) {
+                    return end;
+                }
+            }
+            int length = buffer.getInt(buffer.position());
+            if (length < 1 || length > MAX_BODY_BYTES) {
+                return end;
+            }
+            if (buffer.remaining() < RECORD_HEADER_BYTES + length) {
+                buffer = refill(buffer, RECORD_HEADER_BYTES + length);
+                if (buffer.remaining() < RECORD_HEADER_BYTES + length) {
+                    return end;
+                }
+            }
+            int checksum = buffer.getInt(buffer.position() + 4);
+            int body = buffer.position() + RECORD_HEADER_BYTES;
+            crc.reset();
+            crc.update(buffer.slice(body, length));
+            if ((int) crc.getValue() != checksum || !apply(buffer, body, length)) {
+                return end;
+            }
+            buffer.position(body + length);
+            end += RECORD_HEADER_BYTES + length;
+        }
+    }
+
+    // Moves the unread bytes to the front (growing the buffer if 'needed' does
+    // not fit) and reads more after them
+    private ByteBuffer refill(ByteBuffer buffer, int needed) throws IOException {
+        if (needed > buffer.capacity()) {
+            buffer = newBuffer(Math.max(needed, buffer.capacity() * 2)).put(buffer).flip();
+        } else {
+            buffer.compact().flip();
+        }
+        readFully(buffer, needed);
+        return buffer;
+    }
+
+    // Reads after the buffer's limit until it holds 'needed' unread bytes or the file ends
+    private void readFully(ByteBuffer buffer, int needed) throws IOException {
+        int start = buffer.position();
+        buffer.position(buffer.limit()).limit(buffer.capacity());
+        while (buffer.position() - start < needed && channel.read(buffer) >= 0) {
+            // keep reading
+        }
+        buffer.limit(buffer.position()).position(start);
+    }
+
+    // false for a record of an unknown type, which is treated like a damaged one
+    private boolean apply(ByteBuffer buffer, int body, int length) {
+        byte type = buffer.get(body);
+        int valueBytes = type == QUANTITY ? Integer.BYTES : type == PRICE ? Double.BYTES : -1;
+        if (valueBytes < 0 || length < 1 + valueBytes) {
+            return false;
+        }
+        int idOffset = body + 1 + valueBytes;
+        byte[] id = new byte[body + length - idOffset];
+        buffer.get(idOffset, id);
+        Product p = registry.findById(new String(id, StandardCharsets.UTF_8));
+        boolean applied;
+        if (p == null) {
+            applied = false;
+        } else if (type == QUANTITY) {
+            applied = p.trySetQuantity(p.getQuantity() + buffer.getInt(body + 1));
+        } else {
+            applied = p.trySetPrice(buffer.getDouble(body + 1));
+        }
+        if (applied) {
+            replayed++;
+        } else {
+            skipped++;
+        }
+        return true;
+    }
+
+    /**
+     * @return the id written into the file when it was created
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Syncs the log (see sync()) and returns the file offset up to which
+     * changes are on disk, for a snapshot to record along with getId().
+     * @throws IOException if writing the log failed
+     */
+    public long getSyncedOffset() throws IOException {
+        sync();
+        lock.lock();
+        try {
+            return start + durable;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of changes open() applied from the file
+     */
+    public long getReplayedCount() {
+        return replayed;
+    }
+
+    /**
+     * @return the number of logged changes open() could not apply, e.g.
+     *         because the product is no longer in the catalog
+     */
+    public long getSkippedCount() {
+        return skipped;
+    }
+
+    /**
+     * @return true once writing the log has failed; changes made from then on
+     *         are not durable
+     */
+    public boolean isFailed() {
+        lock.lock();
+        try {
+            return failure != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of changes made after the log failed, which are not in the file
+     */
+    public long getLostCount() {
+        lock.lock();
+        try {
+            return lost;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ----- logging -----
+
+    @Override
+    public void quantityChanged(Product p, int oldQuantity, int newQuantity) {
+        append(p, QUANTITY, newQuantity - oldQuantity);
+    }
+
+    @Override
+    public void priceChanged(Product p, double oldPrice, double newPrice) {
+        append(p, PRICE, Double.doubleToRawLongBits(newPrice));
+    }
+
+    // Encodes the record straight into the pending buffer; only the id bytes are built outside the lock
+    private void append(Product p, byte type, long value) {
+        byte[] id = p.getId().getBytes(StandardCharsets.UTF_8);
+        int valueBytes = type == QUANTITY ? Integer.BYTES : Double.BYTES;
+        int length = 1 + valueBytes + id.length;
+        if (length > MAX_BODY_BYTES) {
+            throw new IllegalArgumentException("Product id too long to log: " + p.getId());
+        }
+        int recordBytes = RECORD_HEADER_BYTES + length;
+
+        boolean full;
+        lock.lock();
+        try {
+            if (failure != null) {
+                lost++; // nothing reaches the file any more; sync() reports why
+                return;
+            }
+            if (pending.remaining() < recordBytes) {
+                pending = newBuffer(Math.max(pending.capacity() * 2, pending.position() + recordBytes))
+                        .put(pending.flip());
+            }
+            int at = pending.position();
+            pending.putInt(length).putInt(0).put(type);
+            if (type == QUANTITY) {
+                pending.putInt((int) value);
+            } else {
+                pending.putLong(value);
+            }
+            pending.put(id);
+            crc.reset();
+            crc.update(pending.array(), at + RECORD_HEADER_BYTES, length);
+            pending.putInt(at + 4, (int) crc.getValue());
+            appended += recordBytes;
+            full = pending.position() >= FLUSH_THRESHOLD && !flushing;
+        } finally {
+            lock.unlock();
+        }
+        if (full) {
+            try {
+                sync();
+            } catch (IOException e) {
+                // kept in 'failure', so the next sync() reports it
+            }
+        }
+    }
+
+    /**
+     * Returns once every change logged before the call is on disk.
+     * Callers that arrive while a flush is running wait for it and are then
+     * written together by the next one.
+     * @throws IOException if writing the log failed; the log stays failed
+     */
+    public void sync() throws IOException {
+        lock.lock();
+        try {
+            long target = appended;
+            while (durable < target) {
+                if (failure != null) {
+                    throw new IOException("Mutation log write failed", failure);
+                }
+                if (flushing) {
+                    flushed.awaitUninterruptibly();
+                    continue;
+                }
+                // Become the writer for everything appended so far
+                flushing = true;
+                ByteBuffer batch = pending.flip();
+                pending = spare;
+                spare = null;
+                long end = appended;
+                IOException error = null;
+                lock.unlock();
+                try {
+                    while (batch.hasRemaining()) {
+                        channel.write(batch);
+                    }
+                    channel.force(false);
+                } catch (IOException e) {
+                    error = e;
+                } finally {
+                    lock.lock();
+                }
+                spare = batch.clear();
+                flushing = false;
+                if (error == null) {
+                    durable = end;
+                } else {
+                    failure = error;
+                }
+                flushed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops logging, writes what is still buffered and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        registry.removeListener(this);
+        try {
+            sync();
+        } finally {
+            channel.close();
+        }
+    }
+}
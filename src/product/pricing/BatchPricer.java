@@ -0,0 +1,148 @@
+package product.pricing;
+
+import product.Product;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Prices many (product, qty) lines against one set of rules in a single call.
+ * The result for each line is exactly what product.finalPrice(qty, policies) returns,
+ * but cheaper to get:
+ * - rules are tried in order of their lower bound (minPriceFactor), and the
+ *   search stops as soon as no remaining rule can beat the best price so far;
+ * - applicableTo / acceptsPolicy are checked once per distinct product in the
+ *   batch, not once per line.
+ */
+public class BatchPricer {
+    // Bounds are scaled down a hair so that rounding inside a rule's own
+    // arithmetic can never make a bound larger than the price it bounds.
+    private static final double BOUND_SLACK = 1 - 1e-9;
+
+    private static final byte UNKNOWN = 0;
+    private static final byte APPLIES = 1;
+    private static final byte SKIPPED = 2;
+
+    private final PricePolicy[] policies; // sorted by minPriceFactor, ascending
+    private final double[] factors;
+    private final boolean empty;          // finalPrice with no rules = plain price
+    private final boolean includesNone;   // a null rule means "no discount" is a candidate
+
+    public BatchPricer(List<PricePolicy> policies) {
+        List<PricePolicy> rules = new ArrayList<>();
+        boolean hasNull = false;
+        if (policies != null) {
+            for (PricePolicy pp : policies) {
+                if (pp == null) {
+                    hasNull = true;
+                } else {
+                    rules.add(pp);
+                }
+            }
+        }
+        rules.sort((a, b) -> Double.compare(a.minPriceFactor(), b.minPriceFactor()));
+        this.policies = rules.toArray(new PricePolicy[0]);
+        this.factors = new double[this.policies.length];
+        for (int i = 0; i < factors.length; i++) {
+            // A rule that does not apply charges the plain price, so never bound above it
+            factors[i] = Math.min(1.0, this.policies[i].minPriceFactor()) * BOUND_SLACK;
+        }
+        this.empty = policies == null || policies.isEmpty();
+        this.includesNone = hasNull;
+    }
+
+    /**
+     * @return the best price for each line, index-aligned with the input
+     */
+    public double[] price(Product[] products, int[] qtys) {
+        double[] out = new double[products.length];
+        price(products, qtys, out);
+        return out;
+    }
+
+    /**
+     * Writes the best price for each line into 'out'.
+     * @throws IllegalArgumentException if the arrays differ in length
+     */
+    public void price(Product[] products, int[] qtys, double[] out) {
+        if (products.length != qtys.length) {
+            throw new IllegalArgumentException("products and qtys must have matching lengths");
+        }
+        price(products, qtys, out, products.length);
+    }
+
+    /**
+     * Writes the best price for the first 'n' lines into 'out'.
+     * Lets callers keep lines in arrays that are larger than the batch.
+     * @throws IllegalArgumentException if any array is shorter than n
+     */
+    public void price(Product[] products, int[] qtys, double[] out, int n) {
+        if (products.length < n || qtys.length < n || out.length < n) {
+            throw new IllegalArgumentException("products, qtys and out must hold at least " + n + " lines");
+        }
+        Map<Product, byte[]> applicability = new IdentityHashMap<>();
+        for (int line = 0; line < n; line++) {
+            Product p = products[line];
+            int qty = qtys[line];
+            if (qty <= 0 || empty) {
+                out[line] = best(p, qty, null);
+            } else {
+                out[line] = best(p, qty, applicability.computeIfAbsent(p, k -> new byte[policies.length]));
+            }
+        }
+    }
+
+    /**
+     * Same as price(products, qtys, out, n) for lines that each name a
+     * different product, as in a Cart. No line shares applicability checks
+     * with another, so nothing is allocated.
+     * @throws IllegalArgumentException if any array is shorter than n
+     */
+    public void priceDistinct(Product[] products, int[] qtys, double[] out, int n) {
+        if (products.length < n || qtys.length < n || out.length < n) {
+            throw new IllegalArgumentException("products, qtys and out must hold at least " + n + " lines");
+        }
+        for (int line = 0; line < n; line++) {
+            out[line] = best(products[line], qtys[line], null);
+        }
+    }
+
+    /**
+     * Best price for a single line; same result as product.finalPrice(qty, policies).
+     */
+    public double price(Product product, int qty) {
+        return best(product, qty, null);
+    }
+
+    // mask caches applicability per rule for this product; null means check every time
+    private double best(Product p, int qty, byte[] mask) {
+        if (qty <= 0) {
+            return 0.0;
+        }
+        double base = p.getPrice() * qty;
+        if (empty) {
+            return base;
+        }
+        double best = includesNone ? base : Double.POSITIVE_INFINITY;
+        for (int k = 0; k < policies.length; k++) {
+            if (factors[k] * base >= best) {
+                break; // sorted by bound: no later rule can do better either
+            }
+            PricePolicy pp = policies[k];
+            boolean applies;
+            if (mask == null) {
+                applies = p.acceptsPolicy(pp) && pp.applicableTo(p);
+            } else {
+                if (mask[k] == UNKNOWN) {
+                    mask[k] = p.acceptsPolicy(pp) && pp.applicableTo(p) ? APPLIES : SKIPPED;
+                }
+                applies = mask[k] == APPLIES;
+            }
+            double v = applies ? pp.apply(p, qty) : base;
+            if (v < best) best = v;
+        }
+        return best;
+    }
+}
@@ -1,5 +1,6 @@
 package product.pricing;
 
+import product.Money;
 import product.Product;
 
 /**
@@ -20,4 +21,20 @@ public class BogoHalf implements PricePolicy {
         int singles = Math.max(0, qty) % 2;
         return pairs * (price * 1.5) + singles * price;
     }
+
+    @Override
+    public long applyMinor(Product p, int qty) {
+        long price = p.getPriceMinor();
+        long pairs = Math.max(0, qty) / 2;
+        long singles = Math.max(0, qty) % 2;
+        return Money.multiply(price, pairs * 3, 2, Money.DEFAULT_ROUNDING) + singles * price;
+    }
+
+    /**
+     * Every unit costs at least 0.75 of the price (a full pair).
+     */
+    @Override
+    public double minPriceFactor() {
+        return 0.75;
+    }
 }
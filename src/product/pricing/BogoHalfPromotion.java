@@ -1,5 +1,7 @@
 package product.pricing;
 
+import product.Money;
+
 /**
  * Buy-One-Get-One-Half promotion.
  * For every pair: second item is -50%.
@@ -19,4 +21,31 @@ public class BogoHalfPromotion extends Promotion {
         int singles = qty % 2;
         return pairs * (basePrice * 1.5) + singles * basePrice;
     }
+
+    /**
+     * Each pair costs 1.5 prices; the half unit is rounded once for all pairs.
+     */
+    @Override
+    protected long calculateDiscountMinor(long basePriceMinor, int qty) {
+        long pairs = qty / 2;
+        long singles = qty % 2;
+        return Money.multiply(basePriceMinor, pairs * 3, 2, Money.DEFAULT_ROUNDING) + singles * basePriceMinor;
+    }
+
+    @Override
+    protected void calculateDiscountAll(double[] basePrices, int[] qtys, double[] out, int n) {
+        for (int i = 0; i < n; i++) {
+            int qty = Math.max(0, qtys[i]);
+            double basePrice = basePrices[i];
+            out[i] = Math.max(0.0, (qty >> 1) * (basePrice * 1.5) + (qty & 1) * basePrice);
+        }
+    }
+
+    /**
+     * Every unit costs at least 0.75 of the price (a full pair).
+     */
+    @Override
+    public double minPriceFactor() {
+        return 0.75;
+    }
 }
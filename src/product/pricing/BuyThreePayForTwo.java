@@ -1,5 +1,6 @@
 package product.pricing;
 
+import product.Money;
 import product.Product;
 
 /**
@@ -33,4 +34,30 @@ public class BuyThreePayForTwo extends Promotion {
         double discountAmount = numberOfDiscounts * basePrice;
         return (basePrice * qty) - discountAmount;
     }
+
+    @Override
+    protected long calculateDiscountMinor(long basePriceMinor, int qty) {
+        return Money.times(basePriceMinor, qty - qty / 3);
+    }
+
+    /**
+     * Below 3 units qty / 3 is 0, so the same formula covers the
+     * "no discount" branch without a branch.
+     */
+    @Override
+    protected void calculateDiscountAll(double[] basePrices, int[] qtys, double[] out, int n) {
+        for (int i = 0; i < n; i++) {
+            int qty = Math.max(0, qtys[i]);
+            double basePrice = basePrices[i];
+            out[i] = Math.max(0.0, (basePrice * qty) - (qty / 3) * basePrice);
+        }
+    }
+
+    /**
+     * At most one unit in three is free.
+     */
+    @Override
+    public double minPriceFactor() {
+        return 2.0 / 3.0;
+    }
 }
@@ -1,12 +1,15 @@
 package product.pricing;
 
+import product.Money;
 import product.Product;
 
 public class FixedOff implements PricePolicy {
     private final double amount; // >= 0
+    private final long amountMinor;
 
     public FixedOff(double amount) {
         this.amount = Math.max(0, amount);
+        this.amountMinor = Money.ofMajor(this.amount);
     }
 
     @Override
@@ -19,4 +22,9 @@ public class FixedOff implements PricePolicy {
         double unit = Math.max(0.0, p.getPrice() - amount);
         return unit * Math.max(0, qty);
     }
+
+    @Override
+    public long applyMinor(Product p, int qty) {
+        return Money.times(Math.max(0L, p.getPriceMinor() - amountMinor), Math.max(0, qty));
+    }
 }
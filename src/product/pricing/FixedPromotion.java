@@ -1,14 +1,18 @@
 package product.pricing;
 
+import product.Money;
+
 /**
  * Fixed amount off promotion (e.g., 500 KZT off per unit).
  * Extends Promotion and implements specific discount logic.
  */
 public class FixedPromotion extends Promotion {
     private final double amount; // >= 0
+    private final long amountMinor;
 
     public FixedPromotion(double amount) {
         this.amount = Math.max(0, amount);
+        this.amountMinor = Money.ofMajor(this.amount);
     }
 
     @Override
@@ -21,4 +25,17 @@ public class FixedPromotion extends Promotion {
         double discountedUnit = Math.max(0.0, basePrice - amount);
         return discountedUnit * qty;
     }
+
+    @Override
+    protected long calculateDiscountMinor(long basePriceMinor, int qty) {
+        return Money.times(Math.max(0L, basePriceMinor - amountMinor), qty);
+    }
+
+    @Override
+    protected void calculateDiscountAll(double[] basePrices, int[] qtys, double[] out, int n) {
+        for (int i = 0; i < n; i++) {
+            int qty = Math.max(0, qtys[i]);
+            out[i] = Math.max(0.0, basePrices[i] - amount) * qty;
+        }
+    }
 }
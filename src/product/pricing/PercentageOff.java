@@ -1,12 +1,15 @@
 package product.pricing;
 
+import product.Money;
 import product.Product;
 
 public class PercentageOff implements PricePolicy {
     private final double percent; // 0..90
+    private final long payBasisPoints; // share of the price still paid, in 1/100 of a percent
 
     public PercentageOff(double percent) {
         this.percent = Math.max(0, Math.min(90, percent));
+        this.payBasisPoints = Money.BASIS_POINTS - Math.round(this.percent * 100);
     }
 
     @Override
@@ -19,4 +22,14 @@ public class PercentageOff implements PricePolicy {
         double unit = p.getPrice() * (1 - percent / 100.0);
         return unit * Math.max(0, qty);
     }
+
+    @Override
+    public long applyMinor(Product p, int qty) {
+        return Money.percentOf(Money.times(p.getPriceMinor(), Math.max(0, qty)), payBasisPoints, Money.DEFAULT_ROUNDING);
+    }
+
+    @Override
+    public double minPriceFactor() {
+        return 1 - percent / 100.0;
+    }
 }
@@ -1,14 +1,18 @@
 package product.pricing;
 
+import product.Money;
+
 /**
  * Percentage-based promotion (e.g., 15% off).
  * Extends Promotion and implements specific discount logic.
  */
 public class PercentagePromotion extends Promotion {
     private final double percent; // 0..90
+    private final long payBasisPoints; // share of the price still paid, in 1/100 of a percent
 
     public PercentagePromotion(double percent) {
         this.percent = Math.max(0, Math.min(90, percent));
+        this.payBasisPoints = Money.BASIS_POINTS - Math.round(this.percent * 100);
     }
 
     @Override
@@ -21,4 +25,23 @@ public class PercentagePromotion extends Promotion {
         double discountedUnit = basePrice * (1 - percent / 100.0);
         return discountedUnit * qty;
     }
+
+    @Override
+    protected long calculateDiscountMinor(long basePriceMinor, int qty) {
+        return Money.percentOf(Money.times(basePriceMinor, qty), payBasisPoints, Money.DEFAULT_ROUNDING);
+    }
+
+    @Override
+    protected void calculateDiscountAll(double[] basePrices, int[] qtys, double[] out, int n) {
+        double factor = 1 - percent / 100.0;
+        for (int i = 0; i < n; i++) {
+            int qty = Math.max(0, qtys[i]);
+            out[i] = Math.max(0.0, basePrices[i] * factor * qty);
+        }
+    }
+
+    @Override
+    public double minPriceFactor() {
+        return 1 - percent / 100.0;
+    }
 }
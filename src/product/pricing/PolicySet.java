@@ -0,0 +1,65 @@
+package product.pricing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A named, mutable set of active pricing rules with a version number.
+ * Every change produces a new version, so caches keyed by the version
+ * (see PriceQuoteCache) never serve quotes computed against an old set.
+ * Versions are unique across all policy sets.
+ */
+public class PolicySet {
+    private static final AtomicLong VERSIONS = new AtomicLong();
+
+    private volatile List<PricePolicy> policies;
+    private volatile long version;
+
+    public PolicySet() {
+        this(List.of());
+    }
+
+    public PolicySet(List<PricePolicy> policies) {
+        this.policies = Collections.unmodifiableList(new ArrayList<>(policies));
+        this.version = VERSIONS.incrementAndGet();
+    }
+
+    public synchronized void add(PricePolicy policy) {
+        List<PricePolicy> updated = new ArrayList<>(policies);
+        updated.add(policy);
+        publish(updated);
+    }
+
+    public synchronized boolean remove(PricePolicy policy) {
+        List<PricePolicy> updated = new ArrayList<>(policies);
+        if (!updated.remove(policy)) {
+            return false;
+        }
+        publish(updated);
+        return true;
+    }
+
+    public synchronized void replaceAll(List<PricePolicy> replacement) {
+        publish(new ArrayList<>(replacement));
+    }
+
+    private void publish(List<PricePolicy> updated) {
+        // version is bumped after the list, so a reader never pairs
+        // a new version with an old list
+        policies = Collections.unmodifiableList(updated);
+        version = VERSIONS.incrementAndGet();
+    }
+
+    /**
+     * @return the current rules (an immutable snapshot)
+     */
+    public List<PricePolicy> asList() {
+        return policies;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
@@ -1,5 +1,6 @@
 package product.pricing;
 
+import product.Money;
 import product.Product;
 
 public interface PricePolicy {
@@ -14,10 +15,30 @@ public interface PricePolicy {
      */
     double apply(Product p, int qty);
 
+    /**
+     * Same as apply(), in Money minor units.
+     * The default converts apply()'s result; built-in rules override it
+     * with pure integer arithmetic.
+     */
+    default long applyMinor(Product p, int qty) {
+        return Money.ofMajor(apply(p, qty));
+    }
+
     /**
      * By default, applicable to all products.
      */
     default boolean applicableTo(Product p) {
         return true;
     }
+
+    /**
+     * Lower bound on what this rule can charge, as a fraction of the
+     * undiscounted price: apply(p, qty) >= minPriceFactor() * p.getPrice() * qty
+     * for every product and qty > 0.
+     * Used by BatchPricer to skip rules that cannot beat the best price so far.
+     * The default of 0 only assumes that the final cost is never negative.
+     */
+    default double minPriceFactor() {
+        return 0.0;
+    }
 }
@@ -0,0 +1,140 @@
+package product.pricing;
+
+import product.Product;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of finalPrice(qty, policies) results, keyed by
+ * product id, quantity and policy-set version.
+ *
+ * Entries go stale on their own:
+ * - every entry remembers the base price it was computed from, so a
+ *   trySetPrice or applyDiscount that changes the price turns the next lookup
+ *   into a miss;
+ * - a changed PolicySet has a new version, so old entries are never hit
+ *   again and age out through LRU eviction.
+ *
+ * The cache is split into segments, each an access-ordered LinkedHashMap
+ * under its own lock, so concurrent lookups rarely contend.
+ */
+public class PriceQuoteCache {
+    private static final int SEGMENTS = 16;
+
+    private record Key(String productId, int qty, long policyVersion) {
+    }
+
+    private record Quote(Product product, double basePrice, double price) {
+    }
+
+    private static final class Segment extends LinkedHashMap<Key, Quote> {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxEntries; // may be 0: such a segment caches nothing
+
+        Segment(int maxEntries) {
+            super(16, 0.75f, true); // access order = LRU
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Quote> eldest) {
+            return size() > maxEntries;
+        }
+    }
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param maxEntries upper bound on the number of cached quotes
+     */
+    public PriceQuoteCache(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        // The first maxEntries % SEGMENTS segments take one entry more, so the sizes add up to maxEntries exactly
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(maxEntries / SEGMENTS + (i < maxEntries % SEGMENTS ? 1 : 0));
+        }
+    }
+
+    /**
+     * @return the same value as product.finalPrice(qty, policies.asList())
+     */
+    public double quote(Product product, int qty, PolicySet policies) {
+        long version = policies.getVersion();
+        List<PricePolicy> rules = policies.asList();
+        Key key = new Key(product.getId(), qty, version);
+        Segment segment = segmentFor(key);
+        double basePrice = product.getPrice();
+
+        Quote cached;
+        synchronized (segment) {
+            cached = segment.get(key);
+        }
+        if (cached != null && cached.product() == product
+                && Double.compare(cached.basePrice(), basePrice) == 0) {
+            hits.increment();
+            return cached.price();
+        }
+
+        misses.increment();
+        double price = product.finalPrice(qty, rules);
+        // Only cache if nothing moved underneath us while computing
+        if (policies.getVersion() == version && Double.compare(product.getPrice(), basePrice) == 0) {
+            synchronized (segment) {
+                segment.put(key, new Quote(product, basePrice, price));
+            }
+        }
+        return price;
+    }
+
+    /**
+     * Drops every cached quote for a product (all quantities, all policy sets).
+     */
+    public void invalidate(Product product) {
+        String id = product.getId();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.keySet().removeIf(k -> k.productId().equals(id));
+            }
+        }
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private Segment segmentFor(Key key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & (SEGMENTS - 1)];
+    }
+}
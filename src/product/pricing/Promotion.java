@@ -1,5 +1,6 @@
 package product.pricing;
 
+import product.Money;
 import product.Product;
 
 /**
@@ -29,6 +30,25 @@ public abstract class Promotion implements PricePolicy {
         return Math.max(0.0, totalPrice);
     }
 
+    /**
+     * Fixed-point version of apply(): same template, amounts in Money minor units.
+     */
+    @Override
+    public final long applyMinor(Product p, int qty) {
+        if (qty <= 0) {
+            return 0L;
+        }
+        return Math.max(0L, calculateDiscountMinor(p.getPriceMinor(), qty));
+    }
+
+    /**
+     * Hook method for applyMinor(). The default goes through calculateDiscount();
+     * subclasses override it with integer arithmetic.
+     */
+    protected long calculateDiscountMinor(long basePriceMinor, int qty) {
+        return Money.ofMajor(calculateDiscount(Money.toMajor(basePriceMinor), qty));
+    }
+
     /**
      * Hook method: subclasses override this to provide specific discount logic.
      * @param basePrice the unit price of the product
@@ -37,6 +57,33 @@ public abstract class Promotion implements PricePolicy {
      */
     protected abstract double calculateDiscount(double basePrice, int qty);
 
+    /**
+     * Bulk version of apply(): prices whole arrays of (unit price, qty) in one pass,
+     * e.g. when repricing the catalog for a feed export.
+     * out[i] gets exactly what apply() would return for a product priced basePrices[i]
+     * bought qtys[i] times: 0 for qty <= 0, never below 0 otherwise.
+     * @throws IllegalArgumentException if the arrays are shorter than basePrices
+     */
+    public final void applyAll(double[] basePrices, int[] qtys, double[] out) {
+        int n = basePrices.length;
+        if (qtys.length < n || out.length < n) {
+            throw new IllegalArgumentException("qtys and out must be at least as long as basePrices");
+        }
+        calculateDiscountAll(basePrices, qtys, out, n);
+    }
+
+    /**
+     * Hook method for applyAll(). The default calls calculateDiscount() per element;
+     * subclasses override it with a branch-free loop the JIT can vectorize.
+     * Implementations must treat qty <= 0 as 0 and clamp results at 0.
+     */
+    protected void calculateDiscountAll(double[] basePrices, int[] qtys, double[] out, int n) {
+        for (int i = 0; i < n; i++) {
+            int qty = qtys[i];
+            out[i] = qty <= 0 ? 0.0 : Math.max(0.0, calculateDiscount(basePrices[i], qty));
+        }
+    }
+
     /**
      * By default, promotions are applicable to all products.
      * Subclasses can override to restrict applicability.
@@ -0,0 +1,567 @@
+package product.search;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntPredicate;
+
+/**
+ * A set of non-negative ints, compressed the way Roaring bitmaps are:
+ * values are grouped by their high 16 bits, and each group (container) holds
+ * its low 16 bits either as a sorted char[] while it has at most
+ * ARRAY_MAX values, or as a 65536-bit long[] once it is denser.
+ * A bitmap container shrinking through removes goes back to an array only at
+ * ARRAY_SHRINK values, so a set hovering around ARRAY_MAX does not convert
+ * (and allocate) on every add and remove.
+ * A sparse set then costs about 2 bytes per value and a dense one 1 bit,
+ * and AND/OR work container by container on whichever form is cheaper.
+ *
+ * Not thread-safe; FilterIndex guards the ones it keeps.
+ */
+public final class CompressedBitmap {
+    static final int ARRAY_MAX = 4096;
+    static final int ARRAY_SHRINK = ARRAY_MAX / 2;
+    private static final int WORDS = 1024; // 65536 bits per bitmap container
+
+    private char[] keys = new char[0];
+    private Container[] containers = new Container[0];
+    private int size; // containers in use
+
+    // One group: 'array' with 'cardinality' sorted values, or 'bits'
+    private static final class Container {
+        char[] array;
+        long[] bits;
+        int cardinality;
+
+        static Container ofArray(char[] array, int cardinality) {
+            Container c = new Container();
+            c.array = array;
+            c.cardinality = cardinality;
+            return c;
+        }
+
+        static Container ofBits(long[] bits, int cardinality) {
+            Container c = new Container();
+            c.bits = bits;
+            c.cardinality = cardinality;
+            return c;
+        }
+
+        boolean contains(char v) {
+            if (bits != null) {
+                return (bits[v >>> 6] & (1L << v)) != 0;
+            }
+            return Arrays.binarySearch(array, 0, cardinality, v) >= 0;
+        }
+
+        boolean add(char v) {
+            if (bits != null) {
+                long before = bits[v >>> 6];
+                bits[v >>> 6] = before | (1L << v);
+                if (before == bits[v >>> 6]) {
+                    return false;
+                }
+                cardinality++;
+                return true;
+            }
+            int at = Arrays.binarySearch(array, 0, cardinality, v);
+            if (at >= 0) {
+                return false;
+            }
+            at = -at - 1;
+            if (cardinality == ARRAY_MAX) {
+                toBits();
+                return add(v);
+            }
+            if (cardinality == array.length) {
+                array = Arrays.copyOf(array, Math.min(ARRAY_MAX, Math.max(4, cardinality * 2)));
+            }
+            System.arraycopy(array, at, array, at + 1, cardinality - at);
+            array[at] = v;
+            cardinality++;
+            return true;
+        }
+
+        boolean remove(char v) {
+            if (bits != null) {
+                long before = bits[v >>> 6];
+                bits[v >>> 6] = before & ~(1L << v);
+                if (before == bits[v >>> 6]) {
+                    return false;
+                }
+                if (--cardinality <= ARRAY_SHRINK) {
+                    toArray();
+                }
+                return true;
+            }
+            int at = Arrays.binarySearch(array, 0, cardinality, v);
+            if (at < 0) {
+                return false;
+            }
+            System.arraycopy(array, at + 1, array, at, cardinality - at - 1);
+            cardinality--;
+            return true;
+        }
+
+        private void toBits() {
+            long[] b = new long[WORDS];
+            for (int i = 0; i < cardinality; i++) {
+                b[array[i] >>> 6] |= 1L << array[i];
+            }
+            bits = b;
+            array = null;
+        }
+
+        private void toArray() {
+            array = valuesOf(bits, cardinality);
+            bits = null;
+        }
+
+        Container copy() {
+            return bits != null
+                    ? ofBits(bits.clone(), cardinality)
+                    : ofArray(Arrays.copyOf(array, cardinality), cardinality);
+        }
+
+        // Passes base | value to the consumer for each value, in order; false stops early
+        boolean forEach(int base, IntPredicate consumer) {
+            if (bits == null) {
+                for (int i = 0; i < cardinality; i++) {
+                    if (!consumer.test(base | array[i])) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            for (int w = 0; w < WORDS; w++) {
+                long word = bits[w];
+                while (word != 0) {
+                    if (!consumer.test(base | (w << 6) | Long.numberOfTrailingZeros(word))) {
+                        return false;
+                    }
+                    word &= word - 1;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static char[] valuesOf(long[] bits, int cardinality) {
+        char[] values = new char[cardinality];
+        int n = 0;
+        for (int w = 0; w < WORDS; w++) {
+            long word = bits[w];
+            while (word != 0) {
+                values[n++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return values;
+    }
+
+    // ----- single values -----
+
+    public boolean contains(int value) {
+        int at = find((char) (value >>> 16));
+        return at >= 0 && containers[at].contains((char) value);
+    }
+
+    /**
+     * @return false if the value was already there
+     */
+    public boolean add(int value) {
+        checkValue(value);
+        char key = (char) (value >>> 16);
+        int at = find(key);
+        if (at < 0) {
+            at = -at - 1;
+            insertContainer(at, key, Container.ofArray(new char[4], 0));
+        }
+        return containers[at].add((char) value);
+    }
+
+    /**
+     * @return false if the value was not there
+     */
+    public boolean remove(int value) {
+        int at = find((char) (value >>> 16));
+        if (at < 0 || !containers[at].remove((char) value)) {
+            return false;
+        }
+        if (containers[at].cardinality == 0) {
+            System.arraycopy(keys, at + 1, keys, at, size - at - 1);
+            System.arraycopy(containers, at + 1, containers, at, size - at - 1);
+            containers[--size] = null;
+        }
+        return true;
+    }
+
+    private static void checkValue(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Bitmap values must be non-negative: " + value);
+        }
+    }
+
+    private int find(char key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insertContainer(int at, char key, Container container) {
+        if (size == keys.length) {
+            int capacity = Math.max(4, size * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+        }
+        System.arraycopy(keys, at, keys, at + 1, size - at);
+        System.arraycopy(containers, at, containers, at + 1, size - at);
+        keys[at] = key;
+        containers[at] = container;
+        size++;
+    }
+
+    // Appends a container with a key greater than all present
+    private void append(char key, Container container) {
+        insertContainer(size, key, container);
+    }
+
+    // ----- whole sets -----
+
+    public int cardinality() {
+        int total = 0;
+        for (int i = 0; i < size; i++) {
+            total += containers[i].cardinality;
+        }
+        return total;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public CompressedBitmap copy() {
+        CompressedBitmap copy = new CompressedBitmap();
+        for (int i = 0; i < size; i++) {
+            copy.append(keys[i], containers[i].copy());
+        }
+        return copy;
+    }
+
+    /**
+     * @return a new bitmap with the values in both
+     */
+    public CompressedBitmap and(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Container c = and(containers[i], other.containers[j]);
+                if (c != null) {
+                    result.append(keys[i], c);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Size of the intersection, without building it. Used for facet counts.
+     */
+    public int andCardinality(CompressedBitmap other) {
+        int total = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                total += andCardinality(containers[i], other.containers[j]);
+                i++;
+                j++;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @return a new bitmap with the values in either
+     */
+    public CompressedBitmap or(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+                result.append(keys[i], containers[i].copy());
+                i++;
+            } else if (i == size || keys[i] > other.keys[j]) {
+                result.append(other.keys[j], other.containers[j].copy());
+                j++;
+            } else {
+                result.append(keys[i], or(containers[i], other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sets this bitmap's values in a plain bitset ('words', bit i = value i),
+     * which must be long enough. OR-ing many small bitmaps this way and
+     * compressing once with fromWords is much cheaper than folding or().
+     */
+    void orInto(long[] words) {
+        for (int i = 0; i < size; i++) {
+            Container c = containers[i];
+            int base = keys[i] * WORDS;
+            if (c.bits != null) {
+                for (int w = 0; w < WORDS && base + w < words.length; w++) {
+                    words[base + w] |= c.bits[w];
+                }
+            } else {
+                int high = keys[i] << 16;
+                for (int k = 0; k < c.cardinality; k++) {
+                    int v = high | c.array[k];
+                    words[v >>> 6] |= 1L << v;
+                }
+            }
+        }
+    }
+
+    /**
+     * Compresses a plain bitset (bit i = value i).
+     */
+    static CompressedBitmap fromWords(long[] words) {
+        CompressedBitmap result = new CompressedBitmap();
+        for (int base = 0; base < words.length; base += WORDS) {
+            int end = Math.min(words.length, base + WORDS);
+            int cardinality = 0;
+            for (int w = base; w < end; w++) {
+                cardinality += Long.bitCount(words[w]);
+            }
+            if (cardinality == 0) {
+                continue;
+            }
+            long[] bits = Arrays.copyOfRange(words, base, base + WORDS);
+            Container c = cardinality > ARRAY_MAX
+                    ? Container.ofBits(bits, cardinality)
+                    : Container.ofArray(valuesOf(bits, cardinality), cardinality);
+            result.append((char) (base / WORDS), c);
+        }
+        return result;
+    }
+
+    /**
+     * Highest value plus one, i.e. the bitset length orInto needs; 0 if empty.
+     */
+    int bound() {
+        if (size == 0) {
+            return 0;
+        }
+        Container last = containers[size - 1];
+        int high = keys[size - 1] << 16;
+        if (last.bits == null) {
+            return (high | last.array[last.cardinality - 1]) + 1;
+        }
+        for (int w = WORDS - 1; ; w--) {
+            if (last.bits[w] != 0) {
+                return high + (w << 6) + 64 - Long.numberOfLeadingZeros(last.bits[w]);
+            }
+        }
+    }
+
+    /**
+     * Passes the values >= 'from' to 'consumer' in increasing order until it returns false.
+     */
+    public void forEach(int from, IntPredicate consumer) {
+        int start = find((char) (Math.max(0, from) >>> 16));
+        if (start < 0) {
+            start = -start - 1;
+        }
+        IntPredicate skipping = from <= 0 ? consumer : v -> v < from || consumer.test(v);
+        for (int i = start; i < size; i++) {
+            if (!containers[i].forEach(keys[i] << 16, skipping)) {
+                return;
+            }
+        }
+    }
+
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int container;
+            private int index; // array position, or bit position in a bitmap container
+
+            @Override
+            public boolean hasNext() {
+                while (container < size) {
+                    Container c = containers[container];
+                    if (c.bits == null) {
+                        if (index < c.cardinality) {
+                            return true;
+                        }
+                    } else {
+                        index = nextBit(c.bits, index);
+                        if (index >= 0) {
+                            return true;
+                        }
+                    }
+                    container++;
+                    index = 0;
+                }
+                return false;
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Container c = containers[container];
+                int high = keys[container] << 16;
+                return c.bits == null ? high | c.array[index++] : high | index++;
+            }
+        };
+    }
+
+    // First set bit at or after 'from', or -1
+    private static int nextBit(long[] bits, int from) {
+        int w = from >>> 6;
+        if (w >= WORDS) {
+            return -1;
+        }
+        long word = bits[w] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++w == WORDS) {
+                return -1;
+            }
+            word = bits[w];
+        }
+    }
+
+    // ----- container operations -----
+
+    private static Container and(Container a, Container b) {
+        if (a.bits != null && b.bits != null) {
+            long[] bits = new long[WORDS];
+            int cardinality = 0;
+            for (int w = 0; w < WORDS; w++) {
+                bits[w] = a.bits[w] & b.bits[w];
+                cardinality += Long.bitCount(bits[w]);
+            }
+            if (cardinality == 0) {
+                return null;
+            }
+            return cardinality > ARRAY_MAX
+                    ? Container.ofBits(bits, cardinality)
+                    : Container.ofArray(valuesOf(bits, cardinality), cardinality);
+        }
+        if (a.bits != null || b.bits != null) {
+            Container array = a.bits != null ? b : a;
+            Container bitmap = a.bits != null ? a : b;
+            char[] values = new char[array.cardinality];
+            int n = 0;
+            for (int i = 0; i < array.cardinality; i++) {
+                char v = array.array[i];
+                values[n] = v;
+                n += (int) ((bitmap.bits[v >>> 6] >>> v) & 1); // branch-free: hits are unpredictable
+            }
+            return n == 0 ? null : Container.ofArray(values, n);
+        }
+        char[] values = new char[Math.min(a.cardinality, b.cardinality)];
+        int n = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.cardinality && j < b.cardinality) {
+            char va = a.array[i];
+            char vb = b.array[j];
+            values[n] = va;
+            n += va == vb ? 1 : 0; // branch-free, as in andCardinality
+            i += va <= vb ? 1 : 0;
+            j += vb <= va ? 1 : 0;
+        }
+        return n == 0 ? null : Container.ofArray(values, n);
+    }
+
+    private static int andCardinality(Container a, Container b) {
+        if (a.bits != null && b.bits != null) {
+            int cardinality = 0;
+            for (int w = 0; w < WORDS; w++) {
+                cardinality += Long.bitCount(a.bits[w] & b.bits[w]);
+            }
+            return cardinality;
+        }
+        if (a.bits != null || b.bits != null) {
+            Container array = a.bits != null ? b : a;
+            Container bitmap = a.bits != null ? a : b;
+            int cardinality = 0;
+            for (int i = 0; i < array.cardinality; i++) {
+                char v = array.array[i];
+                cardinality += (int) ((bitmap.bits[v >>> 6] >>> v) & 1);
+            }
+            return cardinality;
+        }
+        // Branch-free merge: which side advances is data-dependent and mispredicts as ifs
+        int cardinality = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.cardinality && j < b.cardinality) {
+            char va = a.array[i];
+            char vb = b.array[j];
+            cardinality += va == vb ? 1 : 0;
+            i += va <= vb ? 1 : 0;
+            j += vb <= va ? 1 : 0;
+        }
+        return cardinality;
+    }
+
+    private static Container or(Container a, Container b) {
+        if (a.bits == null && b.bits == null && a.cardinality + b.cardinality <= ARRAY_MAX) {
+            char[] values = new char[a.cardinality + b.cardinality];
+            int n = 0;
+            int i = 0;
+            int j = 0;
+            while (i < a.cardinality || j < b.cardinality) {
+                if (j == b.cardinality || (i < a.cardinality && a.array[i] < b.array[j])) {
+                    values[n++] = a.array[i++];
+                } else if (i == a.cardinality || a.array[i] > b.array[j]) {
+                    values[n++] = b.array[j++];
+                } else {
+                    values[n++] = a.array[i++];
+                    j++;
+                }
+            }
+            return Container.ofArray(values, n);
+        }
+        long[] bits = new long[WORDS];
+        for (Container c : new Container[] {a, b}) {
+            if (c.bits != null) {
+                for (int w = 0; w < WORDS; w++) {
+                    bits[w] |= c.bits[w];
+                }
+            } else {
+                for (int i = 0; i < c.cardinality; i++) {
+                    bits[c.array[i] >>> 6] |= 1L << c.array[i];
+                }
+            }
+        }
+        int cardinality = 0;
+        for (long word : bits) {
+            cardinality += Long.bitCount(word);
+        }
+        return cardinality > ARRAY_MAX
+                ? Container.ofBits(bits, cardinality)
+                : Container.ofArray(valuesOf(bits, cardinality), cardinality);
+    }
+}
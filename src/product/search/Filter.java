@@ -0,0 +1,114 @@
+package product.search;
+
+import category.Category;
+import product.Money;
+import product.StockStatus;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A catalog filter for FilterIndex: conditions on category, stock status,
+ * product type and price, combined with and() / or().
+ *
+ *   Filter.and(Filter.category(vinyl), Filter.or(Filter.stockStatus(LOW), Filter.stockStatus(IN_STOCK)),
+ *              Filter.price(1000, 20000))
+ */
+public sealed interface Filter {
+    String TYPE_PRODUCT = "product";
+    String TYPE_PHYSICAL = "physical";
+    String TYPE_DIGITAL = "digital";
+
+    /** Products in the category; null means products without one. */
+    record InCategory(Category category) implements Filter {}
+
+    /** Products whose getStockStatus() is 'status'. */
+    record WithStockStatus(StockStatus status) implements Filter {
+        public WithStockStatus {
+            if (status == null) {
+                throw new IllegalArgumentException("status must not be null");
+            }
+        }
+    }
+
+    /** PhysicalProduct, DigitalProduct or plain Product: one of the TYPE_ constants. */
+    record OfType(String type) implements Filter {
+        public OfType {
+            if (FilterIndex.typeIndex(type) < 0) {
+                throw new IllegalArgumentException("Unknown product type: " + type);
+            }
+        }
+    }
+
+    /** Products priced between the bounds (inclusive), in Money minor units. */
+    record PriceBetween(long minMinor, long maxMinor) implements Filter {
+        public PriceBetween {
+            if (minMinor > maxMinor) {
+                throw new IllegalArgumentException("Invalid price range: " + minMinor + ".." + maxMinor);
+            }
+        }
+    }
+
+    record All(List<Filter> filters) implements Filter {
+        public All {
+            filters = checked(filters);
+        }
+    }
+
+    record Any(List<Filter> filters) implements Filter {
+        public Any {
+            filters = checked(filters);
+        }
+    }
+
+    // An immutable copy of the parts; a null part would read as "all products"
+    private static List<Filter> checked(List<Filter> filters) {
+        if (filters == null) {
+            throw new IllegalArgumentException("filters must not be null");
+        }
+        for (Filter filter : filters) {
+            if (filter == null) {
+                throw new IllegalArgumentException("filters must not contain null");
+            }
+        }
+        return List.copyOf(filters);
+    }
+
+    static Filter category(Category category) {
+        return new InCategory(category);
+    }
+
+    static Filter stockStatus(StockStatus status) {
+        return new WithStockStatus(status);
+    }
+
+    static Filter type(String type) {
+        return new OfType(type);
+    }
+
+    /**
+     * Price range in major units, both ends inclusive.
+     */
+    static Filter price(double min, double max) {
+        if (Double.isNaN(min) || Double.isNaN(max) || min > max) {
+            throw new IllegalArgumentException("Invalid price range: " + min + ".." + max);
+        }
+        try {
+            long minMinor = min == Double.NEGATIVE_INFINITY ? Long.MIN_VALUE : Money.ofMajor(min);
+            long maxMinor = max == Double.POSITIVE_INFINITY ? Long.MAX_VALUE : Money.ofMajor(max);
+            return new PriceBetween(minMinor, maxMinor);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Invalid price range: " + min + ".." + max);
+        }
+    }
+
+    /** Products matching every filter. */
+    static Filter and(Filter... filters) {
+        return new All(Arrays.asList(filters));
+    }
+
+    /** Products matching at least one filter. */
+    static Filter or(Filter... filters) {
+        return new Any(Arrays.asList(filters));
+    }
+}
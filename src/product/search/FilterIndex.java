@@ -0,0 +1,365 @@
+package product.search;
+
+import category.Category;
+import product.DigitalProduct;
+import product.PhysicalProduct;
+import product.Product;
+import product.ProductListener;
+import product.ProductRegistry;
+import product.StockStatus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Secondary indexes for filtering the catalog without scanning it:
+ * a CompressedBitmap of products per category, per stock status and per
+ * product type, and a PriceIndex of the products sorted by price (minor units).
+ *
+ * A Filter is answered by intersecting / uniting those bitmaps, and facet
+ * counts are intersection sizes, so the cost follows the number of matching
+ * products, not the catalog size.
+ *
+ * Kept current through ProductListener: stockStatusChanged moves a product
+ * between stock-status bitmaps (sales that leave the status as it was do not
+ * touch the index), price changes move it between price entries, and
+ * Category.addProduct / removeProduct move it between category bitmaps.
+ * Products are identified by their creation sequence, so results come back in
+ * creation order.
+ *
+ * Thread-safe: queries share a read lock, updates take the write lock.
+ */
+public class FilterIndex implements ProductListener {
+    static final String[] TYPES = {Filter.TYPE_PRODUCT, Filter.TYPE_PHYSICAL, Filter.TYPE_DIGITAL};
+    private static final int NONE = -1;
+    private static final CompressedBitmap EMPTY = new CompressedBitmap(); // never modified
+
+    /**
+     * Counts of the products matching a filter, in total and broken down by
+     * category (null key: no category), stock status and type. Zero counts are left out.
+     */
+    public record Facets(int total, Map<Category, Integer> categories,
+                         Map<StockStatus, Integer> stockStatuses, Map<String, Integer> types) {}
+
+    private Product[] products = new Product[1024];
+    private byte[] statuses = new byte[1024];
+    private long[] prices = new long[1024];
+    private int[] categories = new int[1024];
+
+    private final CompressedBitmap all = new CompressedBitmap();
+    private final CompressedBitmap[] byStatus = newBitmaps(StockStatus.values().length); // by ordinal
+    private final CompressedBitmap[] byType = newBitmaps(TYPES.length);
+    private CompressedBitmap[] byCategory = new CompressedBitmap[0]; // by ordinal
+    private Category[] categoryByOrdinal = new Category[0];
+    private final CompressedBitmap uncategorized = new CompressedBitmap();
+    private final PriceIndex byPrice = new PriceIndex();
+    private int docBound; // highest indexed doc + 1
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Creates an index over every product in the registry and keeps it up
+     * to date from then on.
+     */
+    public static FilterIndex attach(ProductRegistry registry) {
+        FilterIndex index = new FilterIndex();
+        // Listen first, as in SearchIndex.attach: indexing a product twice is harmless
+        registry.addListener(index);
+        for (Product p : registry.getAll()) {
+            index.index(p);
+        }
+        return index;
+    }
+
+    private static CompressedBitmap[] newBitmaps(int n) {
+        CompressedBitmap[] bitmaps = new CompressedBitmap[n];
+        for (int i = 0; i < n; i++) {
+            bitmaps[i] = new CompressedBitmap();
+        }
+        return bitmaps;
+    }
+
+    static int typeIndex(String type) {
+        return Arrays.asList(TYPES).indexOf(type);
+    }
+
+    // ----- updates -----
+
+    @Override
+    public void productRegistered(Product p) {
+        index(p);
+    }
+
+    @Override
+    public void priceChanged(Product p, double oldPrice, double newPrice) {
+        index(p);
+    }
+
+    @Override
+    public void stockStatusChanged(Product p, StockStatus oldStatus, StockStatus newStatus) {
+        index(p);
+    }
+
+    @Override
+    public void categoryChanged(Product p, Category oldCategory, Category newCategory) {
+        index(p);
+    }
+
+    /**
+     * Moves the product to the bitmaps for its current price, stock status
+     * and category. Reads the product itself, under the write lock, rather
+     * than the event values: whichever call runs last sees the latest state,
+     * so events handled out of order still leave the index current.
+     */
+    public void index(Product p) {
+        int doc = Math.toIntExact(p.getSeq() - 1);
+        lock.writeLock().lock();
+        try {
+            long price = p.getPriceMinor();
+            int status = p.getStockStatus().ordinal();
+            Category category = p.getCategory();
+            if (doc >= products.length || products[doc] == null) {
+                ensureCapacity(doc);
+                products[doc] = p;
+                all.add(doc);
+                byType[typeIndex(typeOf(p))].add(doc);
+                statuses[doc] = NONE;
+                categories[doc] = NONE;
+                uncategorized.add(doc);
+                byPrice.add(price, doc);
+                prices[doc] = price;
+                docBound = Math.max(docBound, doc + 1);
+            } else if (prices[doc] != price) {
+                byPrice.remove(prices[doc], doc);
+                byPrice.add(price, doc);
+                prices[doc] = price;
+            }
+            if (statuses[doc] != status) {
+                if (statuses[doc] != NONE) {
+                    byStatus[statuses[doc]].remove(doc);
+                }
+                byStatus[status].add(doc);
+                statuses[doc] = (byte) status;
+            }
+            int ordinal = category != null ? category.getOrdinal() : NONE;
+            if (categories[doc] != ordinal) {
+                categoryBitmap(categories[doc]).remove(doc);
+                if (category != null) {
+                    registerCategory(category);
+                }
+                categoryBitmap(ordinal).add(doc);
+                categories[doc] = ordinal;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static String typeOf(Product p) {
+        if (p instanceof PhysicalProduct) return Filter.TYPE_PHYSICAL;
+        if (p instanceof DigitalProduct) return Filter.TYPE_DIGITAL;
+        return Filter.TYPE_PRODUCT;
+    }
+
+    private void ensureCapacity(int doc) {
+        if (doc < products.length) {
+            return;
+        }
+        int capacity = Math.max(products.length * 2, doc + 1);
+        products = Arrays.copyOf(products, capacity);
+        statuses = Arrays.copyOf(statuses, capacity);
+        prices = Arrays.copyOf(prices, capacity);
+        categories = Arrays.copyOf(categories, capacity);
+    }
+
+    private void registerCategory(Category category) {
+        int ordinal = category.getOrdinal();
+        if (ordinal >= byCategory.length) {
+            int capacity = Math.max(ordinal + 1, byCategory.length * 2);
+            byCategory = Arrays.copyOf(byCategory, capacity);
+            categoryByOrdinal = Arrays.copyOf(categoryByOrdinal, capacity);
+        }
+        if (byCategory[ordinal] == null) {
+            byCategory[ordinal] = new CompressedBitmap();
+            categoryByOrdinal[ordinal] = category;
+        }
+    }
+
+    private CompressedBitmap categoryBitmap(int ordinal) {
+        if (ordinal == NONE) {
+            return uncategorized;
+        }
+        CompressedBitmap bitmap = ordinal < byCategory.length ? byCategory[ordinal] : null;
+        return bitmap != null ? bitmap : EMPTY;
+    }
+
+    // ----- queries -----
+
+    /**
+     * @return the sequence numbers minus one of the matching products, as a new
+     *         bitmap the caller owns; all products for a null filter
+     */
+    public CompressedBitmap evaluate(Filter filter) {
+        lock.readLock().lock();
+        try {
+            return eval(filter).copy();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int count(Filter filter) {
+        lock.readLock().lock();
+        try {
+            return eval(filter).cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Matching products in creation order, for paging like
+     * ProductRegistry.getAllAfter.
+     * @param afterSeq only products created after this sequence number; 0 for all
+     * @param limit maximum number of products
+     */
+    public List<Product> find(Filter filter, long afterSeq, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        List<Product> result = new ArrayList<>(Math.min(limit, 64));
+        int from = (int) Math.min(afterSeq, Integer.MAX_VALUE);
+        lock.readLock().lock();
+        try {
+            eval(filter).forEach(from, doc -> {
+                result.add(products[doc]);
+                return result.size() < limit;
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    public Facets facets(Filter filter) {
+        lock.readLock().lock();
+        try {
+            CompressedBitmap matching = eval(filter);
+            Map<Category, Integer> byCategoryCount = new LinkedHashMap<>();
+            for (int ordinal = 0; ordinal < byCategory.length; ordinal++) {
+                if (byCategory[ordinal] != null) {
+                    put(byCategoryCount, categoryByOrdinal[ordinal], matching.andCardinality(byCategory[ordinal]));
+                }
+            }
+            put(byCategoryCount, null, matching.andCardinality(uncategorized));
+            Map<StockStatus, Integer> byStatusCount = new LinkedHashMap<>();
+            for (int i = 0; i < byStatus.length; i++) {
+                put(byStatusCount, StockStatus.ofOrdinal(i), matching.andCardinality(byStatus[i]));
+            }
+            Map<String, Integer> byTypeCount = new LinkedHashMap<>();
+            for (int i = 0; i < TYPES.length; i++) {
+                put(byTypeCount, TYPES[i], matching.andCardinality(byType[i]));
+            }
+            return new Facets(matching.cardinality(), byCategoryCount, byStatusCount, byTypeCount);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static <K> void put(Map<K, Integer> counts, K key, int count) {
+        if (count > 0) {
+            counts.put(key, count);
+        }
+    }
+
+    /**
+     * @return the categories that products have been filed under so far
+     */
+    public List<Category> getCategories() {
+        lock.readLock().lock();
+        try {
+            List<Category> result = new ArrayList<>();
+            for (Category category : categoryByOrdinal) {
+                if (category != null) {
+                    result.add(category);
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // May return one of the index's own bitmaps; callers under the read lock must not modify it
+    private CompressedBitmap eval(Filter filter) {
+        if (filter == null) {
+            return all;
+        }
+        return switch (filter) {
+            case Filter.InCategory f -> categoryBitmap(f.category() != null ? f.category().getOrdinal() : NONE);
+            case Filter.WithStockStatus f -> byStatus[f.status().ordinal()];
+            case Filter.OfType f -> byType[typeIndex(f.type())];
+            case Filter.PriceBetween f -> {
+                long[] words = new long[(docBound + 63) >>> 6];
+                byPrice.orInto(f.minMinor(), f.maxMinor(), words);
+                yield CompressedBitmap.fromWords(words);
+            }
+            case Filter.All f -> intersection(f.filters());
+            case Filter.Any f -> {
+                List<CompressedBitmap> parts = new ArrayList<>(f.filters().size());
+                for (Filter part : f.filters()) {
+                    parts.add(eval(part));
+                }
+                yield union(parts);
+            }
+        };
+    }
+
+    // Smallest first, so every step works on the smallest intermediate result
+    private CompressedBitmap intersection(List<Filter> filters) {
+        if (filters.isEmpty()) {
+            return all;
+        }
+        List<CompressedBitmap> parts = new ArrayList<>(filters.size());
+        for (Filter part : filters) {
+            parts.add(eval(part));
+        }
+        parts.sort(Comparator.comparingInt(CompressedBitmap::cardinality));
+        CompressedBitmap result = parts.get(0);
+        for (int i = 1; i < parts.size() && !result.isEmpty(); i++) {
+            result = result.and(parts.get(i));
+        }
+        return result;
+    }
+
+    // Two bitmaps are OR-ed directly, more through one plain bitset
+    private static CompressedBitmap union(Collection<CompressedBitmap> parts) {
+        if (parts.isEmpty()) {
+            return EMPTY;
+        }
+        if (parts.size() == 1) {
+            return parts.iterator().next();
+        }
+        if (parts.size() == 2) {
+            Iterator<CompressedBitmap> it = parts.iterator();
+            return it.next().or(it.next());
+        }
+        int bound = 0;
+        for (CompressedBitmap part : parts) {
+            bound = Math.max(bound, part.bound());
+        }
+        long[] words = new long[(bound + 63) >>> 6];
+        for (CompressedBitmap part : parts) {
+            part.orInto(words);
+        }
+        return CompressedBitmap.fromWords(words);
+    }
+}
@@ -0,0 +1,83 @@
+package product.search;
+
+import java.util.Arrays;
+
+/**
+ * The documents containing one term, as a sorted int array (4 bytes per
+ * entry, no boxing). Documents are mostly added in increasing order, which
+ * is an append; an out-of-order add or a removal shifts the tail.
+ * Not thread-safe; SearchIndex guards it.
+ */
+final class PostingList {
+    private static final int[] EMPTY = new int[0];
+
+    final String term;
+    private int[] docs = EMPTY;
+    private int size;
+
+    PostingList(String term) {
+        this.term = term;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int get(int index) {
+        return docs[index];
+    }
+
+    void add(int doc) {
+        if (size > 0 && docs[size - 1] >= doc) {
+            int at = Arrays.binarySearch(docs, 0, size, doc);
+            if (at >= 0) {
+                return;
+            }
+            insert(-at - 1, doc);
+            return;
+        }
+        insert(size, doc);
+    }
+
+    void remove(int doc) {
+        int at = Arrays.binarySearch(docs, 0, size, doc);
+        if (at < 0) {
+            return;
+        }
+        System.arraycopy(docs, at + 1, docs, at, size - at - 1);
+        size--;
+        if (size < docs.length / 4 && docs.length > 8) {
+            docs = Arrays.copyOf(docs, docs.length / 2);
+        }
+    }
+
+    private void insert(int at, int doc) {
+        if (size == docs.length) {
+            docs = Arrays.copyOf(docs, Math.max(4, size + (size >> 1)));
+        }
+        System.arraycopy(docs, at, docs, at + 1, size - at);
+        docs[at] = doc;
+        size++;
+    }
+
+    /**
+     * Index of the first entry at or after 'from' that is >= target, or size()
+     * if there is none. Gallops ahead before the binary search, so walking a
+     * long list in step with a short one skips most of it.
+     */
+    int advance(int from, int target) {
+        int low = from;
+        int step = 1;
+        int high = from;
+        while (high < size && docs[high] < target) {
+            low = high + 1;
+            high = from + step;
+            step <<= 1;
+        }
+        if (high > size) {
+            high = size;
+        }
+        int at = Arrays.binarySearch(docs, low, high, target);
+        return at >= 0 ? at : -at - 1;
+    }
+}
@@ -0,0 +1,133 @@
+package product.search;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Character trie over the index terms, for autocomplete and prefix queries.
+ * Children are kept in sorted parallel arrays (char key, child node) and
+ * found by binary search, so a node costs two small arrays rather than a map,
+ * and walking the children visits terms in alphabetical order.
+ * Not thread-safe; SearchIndex guards it.
+ */
+final class PrefixTrie {
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private static final class Node {
+        char[] keys = NO_KEYS;
+        Node[] children = NO_CHILDREN;
+        PostingList term; // set if a term ends here
+
+        Node child(char c) {
+            int at = Arrays.binarySearch(keys, c);
+            return at >= 0 ? children[at] : null;
+        }
+
+        Node addChild(char c) {
+            int at = Arrays.binarySearch(keys, c);
+            if (at >= 0) {
+                return children[at];
+            }
+            at = -at - 1;
+            int n = keys.length;
+            char[] k = new char[n + 1];
+            Node[] ch = new Node[n + 1];
+            System.arraycopy(keys, 0, k, 0, at);
+            System.arraycopy(children, 0, ch, 0, at);
+            System.arraycopy(keys, at, k, at + 1, n - at);
+            System.arraycopy(children, at, ch, at + 1, n - at);
+            Node node = new Node();
+            k[at] = c;
+            ch[at] = node;
+            keys = k;
+            children = ch;
+            return node;
+        }
+
+        void removeChild(char c) {
+            int at = Arrays.binarySearch(keys, c);
+            if (at < 0) {
+                return;
+            }
+            int n = keys.length;
+            if (n == 1) {
+                keys = NO_KEYS;
+                children = NO_CHILDREN;
+                return;
+            }
+            char[] k = new char[n - 1];
+            Node[] ch = new Node[n - 1];
+            System.arraycopy(keys, 0, k, 0, at);
+            System.arraycopy(children, 0, ch, 0, at);
+            System.arraycopy(keys, at + 1, k, at, n - at - 1);
+            System.arraycopy(children, at + 1, ch, at, n - at - 1);
+            keys = k;
+            children = ch;
+        }
+
+        boolean isEmpty() {
+            return term == null && keys.length == 0;
+        }
+    }
+
+    private final Node root = new Node();
+
+    void put(PostingList term) {
+        Node node = root;
+        for (int i = 0; i < term.term.length(); i++) {
+            node = node.addChild(term.term.charAt(i));
+        }
+        node.term = term;
+    }
+
+    /**
+     * Removes the term and prunes the nodes it leaves empty.
+     */
+    void remove(String term) {
+        remove(root, term, 0);
+    }
+
+    private boolean remove(Node node, String term, int depth) {
+        if (depth == term.length()) {
+            node.term = null;
+        } else {
+            Node child = node.child(term.charAt(depth));
+            if (child == null) {
+                return false;
+            }
+            if (remove(child, term, depth + 1)) {
+                node.removeChild(term.charAt(depth));
+            }
+        }
+        return node.isEmpty();
+    }
+
+    /**
+     * Adds to 'out' up to 'max' terms starting with 'prefix', in alphabetical
+     * order (a term before its extensions).
+     * @return false if more terms matched than were added
+     */
+    boolean collect(String prefix, int max, List<PostingList> out) {
+        Node node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.child(prefix.charAt(i));
+        }
+        return node == null || collect(node, max, out);
+    }
+
+    private static boolean collect(Node node, int max, List<PostingList> out) {
+        if (node.term != null) {
+            if (out.size() == max) {
+                return false;
+            }
+            out.add(node.term);
+        }
+        for (Node child : node.children) {
+            if (!collect(child, max, out)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,139 @@
+package product.search;
+
+import java.util.Arrays;
+
+/**
+ * (price, product) pairs sorted by price, for range filters. The pairs sit in
+ * blocks of up to BLOCK_SIZE entries held as parallel long[] / int[] arrays,
+ * so a range is read as a run of contiguous array slots, and a price change
+ * moves one entry within its block (splitting a block when it fills up)
+ * instead of shifting the whole index.
+ *
+ * Not thread-safe; FilterIndex guards it.
+ */
+final class PriceIndex {
+    static final int BLOCK_SIZE = 1024;
+
+    private static final class Block {
+        final long[] prices = new long[BLOCK_SIZE];
+        final int[] docs = new int[BLOCK_SIZE];
+        int size;
+
+        // Position of the first entry >= (price, doc), or size
+        int lowerBound(long price, int doc) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (compare(prices[mid], docs[mid], price, doc) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    private Block[] blocks = {new Block()};
+    private int blockCount = 1;
+    private int size;
+
+    private static int compare(long priceA, int docA, long priceB, int docB) {
+        int c = Long.compare(priceA, priceB);
+        return c != 0 ? c : Integer.compare(docA, docB);
+    }
+
+    // The block that holds (price, doc) or would receive it: the first whose last entry is >= it
+    private int blockFor(long price, int doc) {
+        int low = 0;
+        int high = blockCount - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            Block b = blocks[mid];
+            if (b.size == 0 || compare(b.prices[b.size - 1], b.docs[b.size - 1], price, doc) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void add(long price, int doc) {
+        int index = blockFor(price, doc);
+        Block b = blocks[index];
+        int at = b.lowerBound(price, doc);
+        if (at < b.size && b.prices[at] == price && b.docs[at] == doc) {
+            return;
+        }
+        if (b.size == BLOCK_SIZE) {
+            split(index);
+            if (at > BLOCK_SIZE / 2) {
+                b = blocks[index + 1];
+                at -= BLOCK_SIZE / 2;
+            }
+        }
+        System.arraycopy(b.prices, at, b.prices, at + 1, b.size - at);
+        System.arraycopy(b.docs, at, b.docs, at + 1, b.size - at);
+        b.prices[at] = price;
+        b.docs[at] = doc;
+        b.size++;
+        size++;
+    }
+
+    void remove(long price, int doc) {
+        int index = blockFor(price, doc);
+        Block b = blocks[index];
+        int at = b.lowerBound(price, doc);
+        if (at == b.size || b.prices[at] != price || b.docs[at] != doc) {
+            return;
+        }
+        System.arraycopy(b.prices, at + 1, b.prices, at, b.size - at - 1);
+        System.arraycopy(b.docs, at + 1, b.docs, at, b.size - at - 1);
+        b.size--;
+        size--;
+        if (b.size == 0 && blockCount > 1) {
+            System.arraycopy(blocks, index + 1, blocks, index, blockCount - index - 1);
+            blocks[--blockCount] = null;
+        }
+    }
+
+    // Moves the upper half of a full block into a new block after it
+    private void split(int index) {
+        if (blockCount == blocks.length) {
+            blocks = Arrays.copyOf(blocks, blockCount * 2);
+        }
+        System.arraycopy(blocks, index + 1, blocks, index + 2, blockCount - index - 1);
+        Block full = blocks[index];
+        Block upper = new Block();
+        int half = BLOCK_SIZE / 2;
+        System.arraycopy(full.prices, half, upper.prices, 0, BLOCK_SIZE - half);
+        System.arraycopy(full.docs, half, upper.docs, 0, BLOCK_SIZE - half);
+        upper.size = BLOCK_SIZE - half;
+        full.size = half;
+        blocks[index + 1] = upper;
+        blockCount++;
+    }
+
+    /**
+     * Sets the bit of every product priced in [min, max] in a plain bitset
+     * (bit i = product i), which must be long enough.
+     */
+    void orInto(long min, long max, long[] words) {
+        for (int index = blockFor(min, Integer.MIN_VALUE); index < blockCount; index++) {
+            Block b = blocks[index];
+            for (int i = b.lowerBound(min, Integer.MIN_VALUE); i < b.size; i++) {
+                if (b.prices[i] > max) {
+                    return;
+                }
+                int doc = b.docs[i];
+                words[doc >>> 6] |= 1L << doc;
+            }
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package product.search;
+
+import category.Category;
+import product.Product;
+import product.ProductListener;
+import product.ProductRegistry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Full-text index over product names, descriptions and category names.
+ *
+ * An inverted index maps every term to the sorted list of products containing
+ * it (PostingList), and a PrefixTrie over the same terms answers autocomplete.
+ * A query intersects the posting lists of its terms, starting from the shortest,
+ * so its cost depends on how many products match rather than on catalog size.
+ *
+ * The index follows the catalog through ProductListener: a product is
+ * re-tokenized when its name, description or category changes, and only the
+ * posting lists of the terms that came or went are touched.
+ * Products are identified by their creation sequence, so results come back in
+ * creation order.
+ *
+ * Thread-safe: queries share a read lock, updates take the write lock.
+ */
+public class SearchIndex implements ProductListener {
+    public static final int MAX_RESULTS = 1000;
+    // a prefix matching more terms than this scans the documents instead of merging the lists
+    static final int MAX_PREFIX_TERMS = 2048;
+
+    private static final PostingList[] NO_TERMS = new PostingList[0];
+
+    // Terms are kept per field, so a change re-tokenizes only the field that changed
+    private record Doc(Product product, String name, String description, Category category,
+                       PostingList[] nameTerms, PostingList[] descriptionTerms,
+                       PostingList[] categoryTerms) {
+
+        boolean has(PostingList term) {
+            return contains(nameTerms, term) || contains(descriptionTerms, term) || contains(categoryTerms, term);
+        }
+    }
+
+    private final Map<String, PostingList> terms = new HashMap<>();
+    private final PrefixTrie trie = new PrefixTrie();
+    private Doc[] docs = new Doc[1024];
+    private int documentCount;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Creates an index over every product in the registry and keeps it up
+     * to date from then on.
+     */
+    public static SearchIndex attach(ProductRegistry registry) {
+        SearchIndex index = new SearchIndex();
+        // Listen first: a product created while the existing ones are read is
+        // then indexed by its events, and indexing it twice is harmless
+        registry.addListener(index);
+        for (Product p : registry.getAll()) {
+            index.index(p);
+        }
+        return index;
+    }
+
+    // ----- updates -----
+
+    @Override
+    public void productRegistered(Product p) {
+        index(p);
+    }
+
+    @Override
+    public void detailsChanged(Product p) {
+        index(p);
+    }
+
+    @Override
+    public void categoryChanged(Product p, Category oldCategory, Category newCategory) {
+        index(p);
+    }
+
+    /**
+     * Brings the product's entry in line with its current name, description
+     * and category. Cheap when none of them changed (e.g. an id or weight edit).
+     * The fields are read under the write lock, so whichever call runs last
+     * indexes the latest values, even if calls for one product race.
+     */
+    public void index(Product p) {
+        int doc = docId(p);
+        lock.writeLock().lock();
+        try {
+            String name = p.getName();
+            String description = p.getDescription();
+            Category category = p.getCategory();
+            Doc old = doc < docs.length ? docs[doc] : null;
+            if (old == null) {
+                old = new Doc(p, null, null, null, NO_TERMS, NO_TERMS, NO_TERMS);
+                if (doc >= docs.length) {
+                    docs = Arrays.copyOf(docs, Math.max(docs.length * 2, doc + 1));
+                }
+                documentCount++;
+            } else if (old.name() == name && old.description() == description && old.category() == category) {
+                return;
+            }
+            // Each step swaps one field's terms; has() on the intermediate doc
+            // tells whether a term is still (or already) there through another field
+            Doc next = old;
+            if (next.name() != name) {
+                PostingList[] nameTerms = resolve(name);
+                next = new Doc(p, name, next.description(), next.category(),
+                        nameTerms, next.descriptionTerms(), next.categoryTerms());
+                update(doc, old.nameTerms(), nameTerms, old, next);
+                old = next;
+            }
+            if (next.description() != description) {
+                PostingList[] descriptionTerms = resolve(description);
+                next = new Doc(p, next.name(), description, next.category(),
+                        next.nameTerms(), descriptionTerms, next.categoryTerms());
+                update(doc, old.descriptionTerms(), descriptionTerms, old, next);
+                old = next;
+            }
+            if (next.category() != category) {
+                PostingList[] categoryTerms = resolve(category != null ? category.getName() : null);
+                next = new Doc(p, next.name(), next.description(), category,
+                        next.nameTerms(), next.descriptionTerms(), categoryTerms);
+                update(doc, old.categoryTerms(), categoryTerms, old, next);
+            }
+            docs[doc] = next;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Posting list changes for one field going from 'removed' to 'added'
+    private void update(int doc, PostingList[] removed, PostingList[] added, Doc before, Doc after) {
+        for (PostingList term : removed) {
+            if (!after.has(term)) {
+                term.remove(doc);
+                if (term.size() == 0) {
+                    terms.remove(term.term);
+                    trie.remove(term.term);
+                }
+            }
+        }
+        for (PostingList term : added) {
+            if (!before.has(term)) {
+                term.add(doc);
+            }
+        }
+    }
+
+    // Posting lists for the distinct terms of 'text', created (and added to the trie) for new ones
+    private PostingList[] resolve(String text) {
+        List<String> words = Tokenizer.terms(text);
+        if (words.isEmpty()) {
+            return NO_TERMS;
+        }
+        Set<String> distinct = new HashSet<>(words);
+        PostingList[] result = new PostingList[distinct.size()];
+        int i = 0;
+        for (String word : distinct) {
+            PostingList term = terms.get(word);
+            if (term == null) {
+                term = new PostingList(word);
+                terms.put(word, term);
+                trie.put(term);
+            }
+            result[i++] = term;
+        }
+        return result;
+    }
+
+    private static boolean contains(PostingList[] list, PostingList term) {
+        for (PostingList t : list) {
+            if (t == term) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int docId(Product p) {
+        return Math.toIntExact(p.getSeq() - 1);
+    }
+
+    // ----- queries -----
+
+    /**
+     * Products containing every term of the query, in creation order.
+     * While the query is still being typed (it does not end with a space or
+     * punctuation) its last term also matches longer words: "гит" finds "гитара".
+     * @param limit maximum number of products, 1..MAX_RESULTS
+     */
+    public List<Product> search(String query, int limit) {
+        if (limit < 1 || limit > MAX_RESULTS) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_RESULTS);
+        }
+        if (query == null) {
+            return List.of();
+        }
+        List<String> words = Tokenizer.terms(query);
+        if (words.isEmpty()) {
+            return List.of();
+        }
+        String prefix = Tokenizer.endsInTerm(query) ? words.remove(words.size() - 1) : null;
+
+        lock.readLock().lock();
+        try {
+            List<PostingList> exact = new ArrayList<>(words.size());
+            for (String word : new HashSet<>(words)) {
+                PostingList term = terms.get(word);
+                if (term == null) {
+                    return List.of();
+                }
+                exact.add(term);
+            }
+            List<Product> result = new ArrayList<>(Math.min(limit, 64));
+            if (exact.isEmpty()) {
+                prefixOnly(prefix, limit, result);
+            } else {
+                intersect(exact, prefix, limit, result);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Walks the shortest list and keeps a cursor into each of the others
+    private void intersect(List<PostingList> exact, String prefix, int limit, List<Product> out) {
+        exact.sort((a, b) -> Integer.compare(a.size(), b.size()));
+        PostingList driver = exact.get(0);
+        int[] cursors = new int[exact.size()];
+        candidates:
+        for (int i = 0; i < driver.size() && out.size() < limit; i++) {
+            int doc = driver.get(i);
+            for (int t = 1; t < exact.size(); t++) {
+                PostingList other = exact.get(t);
+                int at = other.advance(cursors[t], doc);
+                cursors[t] = at;
+                if (at == other.size()) {
+                    break candidates;
+                }
+                if (other.get(at) != doc) {
+                    continue candidates;
+                }
+            }
+            if (prefix == null || hasTermStartingWith(docs[doc], prefix)) {
+                out.add(docs[doc].product());
+            }
+        }
+    }
+
+    private static boolean hasTermStartingWith(Doc doc, String prefix) {
+        return startsWith(doc.nameTerms(), prefix) || startsWith(doc.descriptionTerms(), prefix)
+                || startsWith(doc.categoryTerms(), prefix);
+    }
+
+    private static boolean startsWith(PostingList[] list, String prefix) {
+        for (PostingList term : list) {
+            if (term.term.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Union of the lists of all terms under the prefix, merged in document order
+    private void prefixOnly(String prefix, int limit, List<Product> out) {
+        List<PostingList> lists = new ArrayList<>();
+        if (!trie.collect(prefix, MAX_PREFIX_TERMS, lists)) {
+            // A prefix this common matches at least MAX_PREFIX_TERMS products,
+            // so walking the documents in order reaches the limit quickly
+            for (int doc = 0; doc < docs.length && out.size() < limit; doc++) {
+                if (docs[doc] != null && hasTermStartingWith(docs[doc], prefix)) {
+                    out.add(docs[doc].product());
+                }
+            }
+            return;
+        }
+        if (lists.size() == 1) {
+            PostingList only = lists.get(0);
+            for (int i = 0; i < only.size() && out.size() < limit; i++) {
+                out.add(docs[only.get(i)].product());
+            }
+            return;
+        }
+        // heap entries: {doc, list index, position}
+        PriorityQueue<int[]> heap = new PriorityQueue<>(Math.max(1, lists.size()),
+                (a, b) -> Integer.compare(a[0], b[0]));
+        for (int l = 0; l < lists.size(); l++) {
+            heap.add(new int[] {lists.get(l).get(0), l, 0});
+        }
+        int last = -1;
+        while (!heap.isEmpty() && out.size() < limit) {
+            int[] top = heap.poll();
+            if (top[0] != last) {
+                last = top[0];
+                out.add(docs[last].product());
+            }
+            PostingList list = lists.get(top[1]);
+            if (++top[2] < list.size()) {
+                top[0] = list.get(top[2]);
+                heap.add(top);
+            }
+        }
+    }
+
+    /**
+     * Autocomplete: indexed words starting with the last term of 'text', in
+     * alphabetical order. The earlier terms of 'text' are ignored.
+     * @param limit maximum number of words, 1..MAX_RESULTS
+     */
+    public List<String> suggest(String text, int limit) {
+        if (limit < 1 || limit > MAX_RESULTS) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_RESULTS);
+        }
+        if (text == null) {
+            return List.of();
+        }
+        List<String> words = Tokenizer.terms(text);
+        if (words.isEmpty()) {
+            return List.of();
+        }
+        List<PostingList> found = new ArrayList<>(limit);
+        lock.readLock().lock();
+        try {
+            trie.collect(words.get(words.size() - 1), limit, found);
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<String> result = new ArrayList<>(found.size());
+        for (PostingList term : found) {
+            result.add(term.term);
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * @return the number of products in the index
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documentCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of distinct indexed words
+     */
+    public int getTermCount() {
+        lock.readLock().lock();
+        try {
+            return terms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package product.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits text into search terms: runs of letters and digits, lower-cased,
+ * with 'ё' folded to 'е'. Everything else (spaces, punctuation, emoji)
+ * separates terms. Terms longer than MAX_TERM_LENGTH are cut, which keeps
+ * the trie shallow; prefix queries still find them.
+ */
+final class Tokenizer {
+    static final int MAX_TERM_LENGTH = 32;
+
+    private Tokenizer() {
+    }
+
+    /**
+     * Adds the terms of 'text' to 'out' (duplicates included). Null adds nothing.
+     */
+    static void terms(String text, List<String> out) {
+        if (text == null) {
+            return;
+        }
+        StringBuilder term = new StringBuilder();
+        int length = text.length();
+        for (int i = 0; i <= length; i++) {
+            char c = i < length ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                if (term.length() < MAX_TERM_LENGTH) {
+                    term.append(fold(c));
+                }
+            } else if (term.length() > 0) {
+                out.add(term.toString());
+                term.setLength(0);
+            }
+        }
+    }
+
+    static List<String> terms(String text) {
+        List<String> out = new ArrayList<>();
+        terms(text, out);
+        return out;
+    }
+
+    /**
+     * @return true if 'text' ends inside a term, i.e. the last term may still be typed on
+     */
+    static boolean endsInTerm(String text) {
+        return !text.isEmpty() && Character.isLetterOrDigit(text.charAt(text.length() - 1));
+    }
+
+    private static char fold(char c) {
+        char lower = Character.toLowerCase(c);
+        return lower == 'ё' ? 'е' : lower;
+    }
+}
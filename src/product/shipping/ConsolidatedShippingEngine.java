@@ -0,0 +1,83 @@
+package product.shipping;
+
+import product.PhysicalProduct;
+import product.Product;
+
+import java.util.Arrays;
+
+/**
+ * Quotes shipping for a whole order instead of one product at a time.
+ * Physical lines are grouped by shipping policy in a single pass, each group
+ * is accumulated into a Shipment, and every policy prices its shipment once
+ * (see ShippingPolicy.calculateShipmentCost).
+ *
+ * Shipments are reused between quotes, so a warmed-up engine allocates nothing.
+ * Not thread-safe: use one engine per cart or per thread.
+ */
+public class ConsolidatedShippingEngine {
+    private Shipment[] shipments = new Shipment[4];
+    private double[] costs = new double[4];
+    private int shipmentCount;
+    private double total;
+
+    /**
+     * Quotes the first 'n' lines of an order.
+     * @param lineSubtotals each line's price after promotions (for threshold policies)
+     * @param override if not null, every physical line ships with this policy
+     *                 instead of its own
+     * @return the total shipping cost of the order
+     * @throws IllegalStateException if a physical line has no policy and there is no override
+     */
+    public double quote(Product[] products, int[] qtys, double[] lineSubtotals, int n, ShippingPolicy override) {
+        double orderSubtotal = 0.0;
+        for (int i = 0; i < n; i++) {
+            orderSubtotal += lineSubtotals[i];
+        }
+        shipmentCount = 0;
+        for (int i = 0; i < n; i++) {
+            if (!(products[i] instanceof PhysicalProduct p) || qtys[i] <= 0) {
+                continue;
+            }
+            ShippingPolicy policy = override != null ? override : p.getShippingPolicy();
+            if (policy == null) {
+                throw new IllegalStateException("Shipping policy not set for product: " + p.getName());
+            }
+            shipmentFor(policy, orderSubtotal).add(p, qtys[i], lineSubtotals[i]);
+        }
+        total = 0.0;
+        for (int s = 0; s < shipmentCount; s++) {
+            costs[s] = shipments[s].getPolicy().calculateShipmentCost(shipments[s]);
+            total += costs[s];
+        }
+        return total;
+    }
+
+    // Orders use a handful of policies, so a linear scan beats hashing
+    private Shipment shipmentFor(ShippingPolicy policy, double orderSubtotal) {
+        for (int s = 0; s < shipmentCount; s++) {
+            if (shipments[s].getPolicy() == policy) {
+                return shipments[s];
+            }
+        }
+        if (shipmentCount == shipments.length) {
+            shipments = Arrays.copyOf(shipments, shipmentCount * 2);
+            costs = Arrays.copyOf(costs, shipmentCount * 2);
+        }
+        Shipment shipment = shipments[shipmentCount];
+        if (shipment == null) {
+            shipment = new Shipment();
+            shipments[shipmentCount] = shipment;
+        }
+        shipment.reset(policy, orderSubtotal);
+        shipmentCount++;
+        return shipment;
+    }
+
+    public double getTotal() { return total; }
+
+    public int getShipmentCount() { return shipmentCount; }
+
+    public Shipment getShipment(int index) { return shipments[index]; }
+
+    public double getShipmentCost(int index) { return costs[index]; }
+}
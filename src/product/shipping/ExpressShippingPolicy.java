@@ -1,7 +1,10 @@
 package product.shipping;
 
+import product.Money;
 import product.PhysicalProduct;
 
+import java.util.Set;
+
 /**
  * Calculates shipping cost for express delivery, typically at a higher rate.
  * This policy includes a base fee plus a weight-dependent component.
@@ -9,10 +12,14 @@ import product.PhysicalProduct;
 public class ExpressShippingPolicy implements ShippingPolicy {
     private final double baseFee;
     private final double costPerKg;
+    private final long baseFeeMinor;
+    private final long costPerKgMinor;
 
     public ExpressShippingPolicy(double baseFee, double costPerKg) {
         this.baseFee = baseFee;
         this.costPerKg = costPerKg;
+        this.baseFeeMinor = Money.ofMajor(baseFee);
+        this.costPerKgMinor = Money.ofMajor(costPerKg);
     }
 
     @Override
@@ -24,6 +31,27 @@ public class ExpressShippingPolicy implements ShippingPolicy {
         return baseFee + (billableWeight * costPerKg);
     }
 
+    @Override
+    public long calculateCostMinor(PhysicalProduct product) {
+        // Volumetric kg is cm3 / 5000 and actual kg is grams * 5 / 5000,
+        // so both are compared in units of 1/5000 kg and divided once.
+        long billable = Math.max(product.getWeightGrams() * 5, product.getVolumeCm3());
+        return baseFeeMinor + Money.multiply(costPerKgMinor, billable, 5000, Money.DEFAULT_ROUNDING);
+    }
+
+    /**
+     * One base fee per shipment, on the consolidated billable weight.
+     */
+    @Override
+    public double calculateShipmentCost(Shipment shipment) {
+        return baseFee + (shipment.getBillableWeightKg() * costPerKg);
+    }
+
+    @Override
+    public Set<ShippingInput> dependsOn() {
+        return Set.of(ShippingInput.WEIGHT, ShippingInput.DIMENSIONS);
+    }
+
     @Override
     public String getName() {
         return "Express Shipping";
@@ -1,16 +1,21 @@
 package product.shipping;
 
+import product.Money;
 import product.PhysicalProduct;
 
+import java.util.Set;
+
 /**
  * A shipping policy that applies a single, flat rate fee for any product,
  * regardless of its weight, dimensions, or price.
  */
 public class FlatRateShippingPolicy implements ShippingPolicy {
     private final double flatRate;
+    private final long flatRateMinor;
 
     public FlatRateShippingPolicy(double flatRate) {
         this.flatRate = flatRate;
+        this.flatRateMinor = Money.ofMajor(flatRate);
     }
 
     @Override
@@ -19,6 +24,24 @@ public class FlatRateShippingPolicy implements ShippingPolicy {
         return this.flatRate;
     }
 
+    @Override
+    public long calculateCostMinor(PhysicalProduct product) {
+        return flatRateMinor;
+    }
+
+    /**
+     * One flat fee per shipment, however many items it holds.
+     */
+    @Override
+    public double calculateShipmentCost(Shipment shipment) {
+        return this.flatRate;
+    }
+
+    @Override
+    public Set<ShippingInput> dependsOn() {
+        return Set.of();
+    }
+
     @Override
     public String getName() {
         return "Flat Rate Shipping";
@@ -1,7 +1,10 @@
 package product.shipping;
 
+import product.Money;
 import product.PhysicalProduct;
 
+import java.util.Set;
+
 /**
  * Provides free shipping if the product's price is over a certain threshold,
  * otherwise applies a flat shipping fee.
@@ -9,10 +12,14 @@ import product.PhysicalProduct;
 public class FreeOverThresholdShippingPolicy implements ShippingPolicy {
     private final double threshold;
     private final double flatFee;
+    private final long thresholdMinor;
+    private final long flatFeeMinor;
 
     public FreeOverThresholdShippingPolicy(double threshold, double flatFee) {
         this.threshold = threshold;
         this.flatFee = flatFee;
+        this.thresholdMinor = Money.ofMajor(threshold);
+        this.flatFeeMinor = Money.ofMajor(flatFee);
     }
 
     @Override
@@ -23,6 +30,30 @@ public class FreeOverThresholdShippingPolicy implements ShippingPolicy {
         return flatFee;
     }
 
+    @Override
+    public long calculateCostMinor(PhysicalProduct product) {
+        if (product.getPriceMinor() >= thresholdMinor) {
+            return 0L;
+        }
+        return flatFeeMinor;
+    }
+
+    /**
+     * For a whole order the threshold applies to the order subtotal.
+     */
+    @Override
+    public double calculateShipmentCost(Shipment shipment) {
+        if (shipment.getOrderSubtotal() >= threshold) {
+            return 0.0;
+        }
+        return flatFee;
+    }
+
+    @Override
+    public Set<ShippingInput> dependsOn() {
+        return Set.of(ShippingInput.PRICE);
+    }
+
     @Override
     public String getName() {
         return "Free Shipping Over " + threshold;
@@ -0,0 +1,174 @@
+package product.shipping;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Carrier tariff of (zone, weight breakpoint) rates, read straight from a
+ * memory-mapped binary file. Nothing is parsed or copied onto the heap, so
+ * opening a card takes the same time whatever the tariff size.
+ *
+ * File layout (little-endian):
+ *   int    magic ('RCRD')
+ *   int    format version (1)
+ *   int    zone count
+ *   int    breakpoint count
+ *   double uniform step in kg, or 0 if breakpoints are irregular
+ *   double breakpoints[breakpointCount]       ascending upper weight bounds in kg (inclusive)
+ *   double rates[zoneCount * breakpointCount] row per zone
+ *
+ * With a uniform step the tier is found by direct index; otherwise by binary
+ * search over the mapped breakpoints.
+ */
+public final class RateCard {
+    private static final int MAGIC = 0x44524352; // "RCRD" read as little-endian
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 24;
+
+    private final ByteBuffer data; // only absolute reads, safe to share between threads
+    private final int zoneCount;
+    private final int breakpointCount;
+    private final double uniformStep;
+    private final int ratesOffset;
+
+    private RateCard(ByteBuffer data) {
+        if (data.capacity() < HEADER_BYTES) {
+            throw new IllegalArgumentException("Rate card is truncated");
+        }
+        if (data.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a rate card file");
+        }
+        if (data.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Unsupported rate card version: " + data.getInt(4));
+        }
+        this.data = data;
+        this.zoneCount = data.getInt(8);
+        this.breakpointCount = data.getInt(12);
+        this.uniformStep = data.getDouble(16);
+        this.ratesOffset = HEADER_BYTES + breakpointCount * Double.BYTES;
+        long expected = (long) ratesOffset + (long) zoneCount * breakpointCount * Double.BYTES;
+        if (zoneCount <= 0 || breakpointCount <= 0 || data.capacity() != expected) {
+            throw new IllegalArgumentException("Rate card size does not match its header");
+        }
+    }
+
+    /**
+     * Memory-maps a rate card file. The mapping stays valid after the file is closed.
+     */
+    public static RateCard map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new RateCard(mapped.order(ByteOrder.LITTLE_ENDIAN));
+        }
+    }
+
+    /**
+     * Writes a rate card file, e.g. when importing a carrier's tariff.
+     * @param breakpoints ascending upper weight bounds in kg
+     * @param ratesByZone ratesByZone[zone][i] is the rate up to breakpoints[i]
+     */
+    public static void write(Path file, double[] breakpoints, double[][] ratesByZone) throws IOException {
+        int count = breakpoints.length;
+        if (count == 0 || ratesByZone.length == 0) {
+            throw new IllegalArgumentException("A rate card needs at least one zone and one breakpoint");
+        }
+        for (int i = 1; i < count; i++) {
+            if (!(breakpoints[i] > breakpoints[i - 1])) {
+                throw new IllegalArgumentException("Breakpoints must be strictly ascending");
+            }
+        }
+        for (double[] zone : ratesByZone) {
+            if (zone.length != count) {
+                throw new IllegalArgumentException("Every zone needs one rate per breakpoint");
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + (1 + ratesByZone.length) * count * Double.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(ratesByZone.length).putInt(count).putDouble(uniformStep(breakpoints));
+        for (double b : breakpoints) {
+            buffer.putDouble(b);
+        }
+        for (double[] zone : ratesByZone) {
+            for (double rate : zone) {
+                buffer.putDouble(rate);
+            }
+        }
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    // Breakpoints step, step*2, step*3, ... can be looked up by index
+    private static double uniformStep(double[] breakpoints) {
+        double step = breakpoints[0];
+        for (int i = 0; i < breakpoints.length; i++) {
+            if (breakpoints[i] != step * (i + 1)) {
+                return 0.0;
+            }
+        }
+        return step;
+    }
+
+    /**
+     * @return the rate for a parcel of the given weight in the given zone
+     * @throws IllegalArgumentException if the zone does not exist or the parcel
+     *         is heavier than the last breakpoint
+     */
+    public double rate(int zone, double weightKg) {
+        if (zone < 0 || zone >= zoneCount) {
+            throw new IllegalArgumentException("Unknown zone: " + zone);
+        }
+        int tier = tierOf(weightKg);
+        if (tier < 0) {
+            throw new IllegalArgumentException("Parcel of " + weightKg + " kg exceeds the rate card");
+        }
+        return data.getDouble(ratesOffset + (zone * breakpointCount + tier) * Double.BYTES);
+    }
+
+    // Index of the first breakpoint >= weight, or -1 past the last one
+    private int tierOf(double weightKg) {
+        if (uniformStep > 0) {
+            // The division can round across a breakpoint, so the guess is
+            // checked against the stored breakpoints and moved by one if needed
+            int tier = (int) Math.min(Math.max(0, Math.ceil(weightKg / uniformStep) - 1), breakpointCount);
+            if (tier > 0 && breakpoint(tier - 1) >= weightKg) {
+                tier--;
+            } else if (tier < breakpointCount && breakpoint(tier) < weightKg) {
+                tier++;
+            }
+            return tier < breakpointCount ? tier : -1;
+        }
+        int lo = 0;
+        int hi = breakpointCount - 1;
+        if (weightKg > breakpoint(hi)) {
+            return -1;
+        }
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (breakpoint(mid) < weightKg) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private double breakpoint(int i) {
+        return data.getDouble(HEADER_BYTES + i * Double.BYTES);
+    }
+
+    public int getZoneCount() { return zoneCount; }
+
+    public int getBreakpointCount() { return breakpointCount; }
+
+    public double getMaxWeightKg() { return breakpoint(breakpointCount - 1); }
+}
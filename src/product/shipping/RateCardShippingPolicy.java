@@ -0,0 +1,51 @@
+package product.shipping;
+
+import product.PhysicalProduct;
+
+import java.util.Set;
+
+/**
+ * Shipping priced from a carrier rate card for one destination zone.
+ * Like express shipping, the billable weight is the larger of the actual
+ * and the volumetric weight.
+ */
+public class RateCardShippingPolicy implements ShippingPolicy {
+    private final RateCard rateCard;
+    private final int zone;
+
+    public RateCardShippingPolicy(RateCard rateCard, int zone) {
+        if (zone < 0 || zone >= rateCard.getZoneCount()) {
+            throw new IllegalArgumentException("Unknown zone: " + zone);
+        }
+        this.rateCard = rateCard;
+        this.zone = zone;
+    }
+
+    @Override
+    public double calculateCost(PhysicalProduct product) {
+        double volumetric = (product.getLengthCm() * product.getWidthCm() * product.getHeightCm()) / 5000.0;
+        return rateCard.rate(zone, Math.max(product.getWeightKg(), volumetric));
+    }
+
+    /**
+     * The whole shipment goes as one parcel at its consolidated billable weight.
+     */
+    @Override
+    public double calculateShipmentCost(Shipment shipment) {
+        return rateCard.rate(zone, shipment.getBillableWeightKg());
+    }
+
+    @Override
+    public Set<ShippingInput> dependsOn() {
+        return Set.of(ShippingInput.WEIGHT, ShippingInput.DIMENSIONS);
+    }
+
+    @Override
+    public String getName() {
+        return "Rate Card Zone " + zone;
+    }
+
+    public int getZone() {
+        return zone;
+    }
+}
@@ -0,0 +1,85 @@
+package product.shipping;
+
+import product.PhysicalProduct;
+
+import java.util.Arrays;
+
+/**
+ * The physical lines of one order that ship together under one policy,
+ * with their totals accumulated in a single pass:
+ * actual weight, volumetric weight (L x W x H / 5000 per unit), units and subtotal.
+ * ShippingPolicy.calculateShipmentCost prices the whole shipment at once.
+ *
+ * Instances are reused by ConsolidatedShippingEngine between quotes.
+ */
+public class Shipment {
+    private ShippingPolicy policy;
+    private PhysicalProduct[] products = new PhysicalProduct[8];
+    private int[] quantities = new int[8];
+    private int lineCount;
+    private int units;
+    private double weightKg;
+    private double volumetricWeightKg;
+    private double subtotal;
+    private double orderSubtotal;
+
+    void reset(ShippingPolicy policy, double orderSubtotal) {
+        this.policy = policy;
+        Arrays.fill(products, 0, lineCount, null);
+        this.lineCount = 0;
+        this.units = 0;
+        this.weightKg = 0.0;
+        this.volumetricWeightKg = 0.0;
+        this.subtotal = 0.0;
+        this.orderSubtotal = orderSubtotal;
+    }
+
+    void add(PhysicalProduct product, int qty, double lineSubtotal) {
+        if (lineCount == products.length) {
+            products = Arrays.copyOf(products, lineCount * 2);
+            quantities = Arrays.copyOf(quantities, lineCount * 2);
+        }
+        products[lineCount] = product;
+        quantities[lineCount] = qty;
+        lineCount++;
+        units += qty;
+        weightKg += product.getWeightKg() * qty;
+        volumetricWeightKg += (product.getLengthCm() * product.getWidthCm() * product.getHeightCm()) / 5000.0 * qty;
+        subtotal += lineSubtotal;
+    }
+
+    public ShippingPolicy getPolicy() { return policy; }
+
+    public int getLineCount() { return lineCount; }
+
+    public PhysicalProduct getProduct(int line) { return products[line]; }
+
+    public int getQuantity(int line) { return quantities[line]; }
+
+    public int getUnits() { return units; }
+
+    /**
+     * @return sum of weight * qty over the shipment's lines
+     */
+    public double getWeightKg() { return weightKg; }
+
+    /**
+     * @return sum of volumetric weight * qty over the shipment's lines
+     */
+    public double getVolumetricWeightKg() { return volumetricWeightKg; }
+
+    /**
+     * @return the larger of actual and volumetric weight
+     */
+    public double getBillableWeightKg() { return Math.max(weightKg, volumetricWeightKg); }
+
+    /**
+     * @return subtotal of the lines in this shipment
+     */
+    public double getSubtotal() { return subtotal; }
+
+    /**
+     * @return subtotal of the whole order, including lines that do not ship
+     */
+    public double getOrderSubtotal() { return orderSubtotal; }
+}
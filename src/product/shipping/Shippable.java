@@ -1,5 +1,7 @@
 package product.shipping;
 
+import product.Money;
+
 /**
  * Interface for products that require physical shipping.
  * Physical products should implement this interface.
@@ -11,6 +13,14 @@ public interface Shippable {
      */
     double getShippingCost();
 
+    /**
+     * Same as getShippingCost(), in Money minor units.
+     * @return the shipping cost in minor units
+     */
+    default long getShippingCostMinor() {
+        return Money.ofMajor(getShippingCost());
+    }
+
     /**
      * Check if this product requires shipping.
      * @return true if shipping is required, false otherwise
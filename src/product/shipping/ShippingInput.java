@@ -0,0 +1,12 @@
+package product.shipping;
+
+/**
+ * Product attributes a shipping policy can depend on.
+ * PhysicalProduct caches its shipping cost and only recomputes it when
+ * one of the attributes its policy declares (ShippingPolicy.dependsOn) changes.
+ */
+public enum ShippingInput {
+    WEIGHT,
+    DIMENSIONS,
+    PRICE
+}
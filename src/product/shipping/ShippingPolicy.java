@@ -1,7 +1,11 @@
 package product.shipping;
 
+import product.Money;
 import product.PhysicalProduct;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 /**
  * An interface for defining different strategies for calculating shipping costs.
  * This allows for adding new shipping methods without modifying the product classes,
@@ -16,6 +20,45 @@ public interface ShippingPolicy {
      */
     double calculateCost(PhysicalProduct product);
 
+    /**
+     * Same as calculateCost(), in Money minor units.
+     * The default converts through calculateCost(); built-in policies override
+     * it with integer arithmetic (weights in whole grams).
+     *
+     * @param product The product for which to calculate shipping cost.
+     * @return The calculated shipping cost in minor units.
+     */
+    default long calculateCostMinor(PhysicalProduct product) {
+        return Money.ofMajor(calculateCost(product));
+    }
+
+    /**
+     * Cost of shipping several lines together (see ConsolidatedShippingEngine).
+     * The default prices every unit on its own, like calculateCost, and adds
+     * them up (cost x quantity per line); policies that can consolidate override it.
+     *
+     * @param shipment The lines shipping together under this policy.
+     * @return The cost for the whole shipment.
+     */
+    default double calculateShipmentCost(Shipment shipment) {
+        double cost = 0.0;
+        for (int i = 0; i < shipment.getLineCount(); i++) {
+            cost += calculateCost(shipment.getProduct(i)) * shipment.getQuantity(i);
+        }
+        return cost;
+    }
+
+    /**
+     * Which product attributes the cost depends on. PhysicalProduct caches the
+     * cost and recomputes it only when one of these changes (or the policy does).
+     * The default is every attribute, which is always safe.
+     *
+     * @return The attributes calculateCost reads.
+     */
+    default Set<ShippingInput> dependsOn() {
+        return EnumSet.allOf(ShippingInput.class);
+    }
+
     /**
      * A human-readable name for the shipping policy.
      * @return The name of the policy.
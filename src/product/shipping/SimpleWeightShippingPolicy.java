@@ -1,15 +1,20 @@
 package product.shipping;
 
+import product.Money;
 import product.PhysicalProduct;
 
+import java.util.Set;
+
 /**
  * Calculates shipping cost based on a simple weight-based formula.
  */
 public class SimpleWeightShippingPolicy implements ShippingPolicy {
     private final double costPerKg;
+    private final long costPerKgMinor;
 
     public SimpleWeightShippingPolicy(double costPerKg) {
         this.costPerKg = costPerKg;
+        this.costPerKgMinor = Money.ofMajor(costPerKg);
     }
 
     @Override
@@ -17,6 +22,21 @@ public class SimpleWeightShippingPolicy implements ShippingPolicy {
         return product.getWeightKg() * costPerKg;
     }
 
+    @Override
+    public long calculateCostMinor(PhysicalProduct product) {
+        return Money.multiply(costPerKgMinor, product.getWeightGrams(), 1000, Money.DEFAULT_ROUNDING);
+    }
+
+    @Override
+    public double calculateShipmentCost(Shipment shipment) {
+        return shipment.getWeightKg() * costPerKg;
+    }
+
+    @Override
+    public Set<ShippingInput> dependsOn() {
+        return Set.of(ShippingInput.WEIGHT);
+    }
+
     @Override
     public String getName() {
         return "Simple Weight-Based Shipping";
@@ -0,0 +1,205 @@
+package product.tax;
+
+import category.Category;
+import product.Money;
+import product.Product;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Progressive VAT with a bracket schedule loaded from a file, so each
+ * jurisdiction can have its own tiers. Same rule as ProgressiveVat: the whole
+ * subtotal is taxed at the rate of the bracket it falls into.
+ *
+ * File format, one bracket per line in ascending order:
+ *   # comment
+ *   100   0.05    subtotals up to 100 (inclusive) pay 5%
+ *   500   0.10
+ *   *     0.15    last line, no upper bound
+ *
+ * The schedule is kept as sorted primitive arrays and swapped as a whole by
+ * reload(), so calculations in flight always see one consistent schedule.
+ */
+public class BracketVat implements TaxPolicy {
+    // Up to this many brackets a linear count without branches beats binary search
+    private static final int LINEAR_SEARCH_MAX = 16;
+
+    private final Path file;
+    private volatile Schedule schedule;
+
+    /** bounds[i] is the inclusive upper bound of bracket i; the last one is +Infinity. */
+    private record Schedule(double[] bounds, double[] rates, long[] boundsMinor, long[] basisPoints) {
+        int bracketOf(double subtotal) {
+            double[] b = bounds;
+            if (b.length <= LINEAR_SEARCH_MAX) {
+                int i = 0;
+                for (double bound : b) {
+                    i += subtotal > bound ? 1 : 0;
+                }
+                return Math.min(i, b.length - 1);
+            }
+            int lo = 0;
+            int hi = b.length - 1;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (b[mid] < subtotal) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        int bracketOfMinor(long subtotalMinor) {
+            int i = Arrays.binarySearch(boundsMinor, subtotalMinor);
+            return i >= 0 ? i : -i - 1;
+        }
+    }
+
+    private BracketVat(Path file, Schedule schedule) {
+        this.file = file;
+        this.schedule = schedule;
+    }
+
+    /**
+     * Reads a bracket schedule file.
+     * @throws IllegalArgumentException if the file is malformed
+     */
+    public static BracketVat load(Path file) throws IOException {
+        return new BracketVat(file, parse(file));
+    }
+
+    /**
+     * Re-reads the file. On any error the current schedule stays in place.
+     */
+    public void reload() throws IOException {
+        schedule = parse(file);
+    }
+
+    private static Schedule parse(Path file) throws IOException {
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        double[] bounds = new double[lines.size()];
+        double[] rates = new double[lines.size()];
+        int count = 0;
+        for (int n = 0; n < lines.size(); n++) {
+            String line = lines.get(n).strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            if (count > 0 && bounds[count - 1] == Double.POSITIVE_INFINITY) {
+                throw new IllegalArgumentException(file + ":" + (n + 1) + ": bracket after the unbounded '*' bracket");
+            }
+            String[] parts = line.split("\\s+");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException(file + ":" + (n + 1) + ": expected '<upTo> <rate>'");
+            }
+            double bound;
+            double rate;
+            try {
+                bound = parts[0].equals("*") ? Double.POSITIVE_INFINITY : Double.parseDouble(parts[0]);
+                rate = Double.parseDouble(parts[1]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(file + ":" + (n + 1) + ": " + e.getMessage());
+            }
+            if (count > 0 && !(bound > bounds[count - 1])) {
+                throw new IllegalArgumentException(file + ":" + (n + 1) + ": brackets must be in ascending order");
+            }
+            if (!(rate >= 0 && rate <= 1)) {
+                throw new IllegalArgumentException(file + ":" + (n + 1) + ": rate must be between 0 and 1");
+            }
+            bounds[count] = bound;
+            rates[count] = rate;
+            count++;
+        }
+        if (count == 0 || bounds[count - 1] != Double.POSITIVE_INFINITY) {
+            throw new IllegalArgumentException(file + ": the last bracket must be unbounded ('*')");
+        }
+        bounds = Arrays.copyOf(bounds, count);
+        rates = Arrays.copyOf(rates, count);
+        long[] boundsMinor = new long[count];
+        long[] basisPoints = new long[count];
+        for (int i = 0; i < count; i++) {
+            boundsMinor[i] = i == count - 1 ? Long.MAX_VALUE : Money.ofMajor(bounds[i]);
+            basisPoints[i] = Math.round(rates[i] * Money.BASIS_POINTS);
+        }
+        return new Schedule(bounds, rates, boundsMinor, basisPoints);
+    }
+
+    @Override
+    public String name() {
+        return "Bracket VAT (" + file.getFileName() + ")";
+    }
+
+    @Override
+    public double calculateTax(Product p, double subtotal) {
+        Schedule s = schedule;
+        return subtotal * s.rates[s.bracketOf(subtotal)];
+    }
+
+    @Override
+    public long calculateTaxMinor(Product p, long subtotalMinor) {
+        Schedule s = schedule;
+        return Money.percentOf(subtotalMinor, s.basisPoints[s.bracketOfMinor(subtotalMinor)], Money.DEFAULT_ROUNDING);
+    }
+
+    /**
+     * Tax for many order lines at once, e.g. for end-of-day reporting.
+     * The whole batch is taxed against one schedule even if reload() runs meanwhile.
+     * @return tax per line, index-aligned with subtotals
+     */
+    public double[] calculateTax(double[] subtotals) {
+        double[] out = new double[subtotals.length];
+        calculateTax(subtotals, out, subtotals.length);
+        return out;
+    }
+
+    /**
+     * Writes the tax for the first 'n' subtotals into 'out'.
+     */
+    public void calculateTax(double[] subtotals, double[] out, int n) {
+        if (subtotals.length < n || out.length < n) {
+            throw new IllegalArgumentException("subtotals and out must hold at least " + n + " lines");
+        }
+        Schedule s = schedule;
+        double[] rates = s.rates;
+        for (int i = 0; i < n; i++) {
+            out[i] = subtotals[i] * rates[s.bracketOf(subtotals[i])];
+        }
+    }
+
+    /**
+     * Total tax over the first 'n' subtotals, without materialising per-line results.
+     */
+    public double totalTax(double[] subtotals, int n) {
+        if (subtotals.length < n) {
+            throw new IllegalArgumentException("subtotals must hold at least " + n + " lines");
+        }
+        Schedule s = schedule;
+        double[] rates = s.rates;
+        double total = 0;
+        for (int i = 0; i < n; i++) {
+            total += subtotals[i] * rates[s.bracketOf(subtotals[i])];
+        }
+        return total;
+    }
+
+    public int getBracketCount() {
+        return schedule.bounds.length;
+    }
+
+    @Override
+    public boolean applicableTo(Product p) {
+        return true;
+    }
+
+    @Override
+    public Applicability applicableToType(Class<? extends Product> type, Category category) {
+        return Applicability.ALWAYS;
+    }
+}
@@ -1,5 +1,7 @@
 package product.tax;
 
+import category.Category;
+import product.Money;
 import product.Product;
 
 /**
@@ -8,9 +10,11 @@ import product.Product;
  */
 public class FlatVat implements TaxPolicy {
     private final double vatRate; // e.g., 0.12 for 12%
+    private final long vatBasisPoints; // e.g., 1200 for 12%
 
     public FlatVat(double vatRate) {
         this.vatRate = Math.max(0.0, Math.min(1.0, vatRate));
+        this.vatBasisPoints = Math.round(this.vatRate * Money.BASIS_POINTS);
     }
 
     @Override
@@ -23,8 +27,23 @@ public class FlatVat implements TaxPolicy {
         return subtotal * vatRate;
     }
 
+    @Override
+    public long calculateTaxMinor(Product p, long subtotalMinor) {
+        return Money.percentOf(subtotalMinor, vatBasisPoints, Money.DEFAULT_ROUNDING);
+    }
+
+    @Override
+    public double flatRate() {
+        return vatRate;
+    }
+
     @Override
     public boolean applicableTo(Product p) {
         return true; // applies to all products
     }
+
+    @Override
+    public Applicability applicableToType(Class<? extends Product> type, Category category) {
+        return Applicability.ALWAYS;
+    }
 }
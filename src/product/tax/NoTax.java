@@ -1,5 +1,6 @@
 package product.tax;
 
+import category.Category;
 import product.Product;
 
 /**
@@ -17,8 +18,23 @@ public class NoTax implements TaxPolicy {
         return 0.0;
     }
 
+    @Override
+    public long calculateTaxMinor(Product p, long subtotalMinor) {
+        return 0L;
+    }
+
+    @Override
+    public double flatRate() {
+        return 0.0;
+    }
+
     @Override
     public boolean applicableTo(Product p) {
         return true;
     }
+
+    @Override
+    public Applicability applicableToType(Class<? extends Product> type, Category category) {
+        return Applicability.ALWAYS;
+    }
 }
@@ -1,5 +1,7 @@
 package product.tax;
 
+import category.Category;
+import product.Money;
 import product.Product;
 
 /**
@@ -27,9 +29,27 @@ public class ProgressiveVat implements TaxPolicy {
         }
     }
 
+    @Override
+    public long calculateTaxMinor(Product p, long subtotalMinor) {
+        long rate;
+        if (subtotalMinor <= 100 * Money.MINOR_PER_MAJOR) {
+            rate = 500;  // 5%
+        } else if (subtotalMinor <= 500 * Money.MINOR_PER_MAJOR) {
+            rate = 1000; // 10%
+        } else {
+            rate = 1500; // 15%
+        }
+        return Money.percentOf(subtotalMinor, rate, Money.DEFAULT_ROUNDING);
+    }
+
     @Override
     public boolean applicableTo(Product p) {
         // This policy can apply to any product
         return true;
     }
+
+    @Override
+    public Applicability applicableToType(Class<? extends Product> type, Category category) {
+        return Applicability.ALWAYS;
+    }
 }
@@ -1,5 +1,7 @@
 package product.tax;
 
+import category.Category;
+import product.Money;
 import product.Product;
 import product.DigitalProduct;
 
@@ -9,9 +11,11 @@ import product.DigitalProduct;
  */
 public class ReducedDigitalVat implements TaxPolicy {
     private final double vatRate; // e.g., 0.05 for 5%
+    private final long vatBasisPoints; // e.g., 500 for 5%
 
     public ReducedDigitalVat(double vatRate) {
         this.vatRate = Math.max(0.0, Math.min(1.0, vatRate));
+        this.vatBasisPoints = Math.round(this.vatRate * Money.BASIS_POINTS);
     }
 
     @Override
@@ -27,8 +31,26 @@ public class ReducedDigitalVat implements TaxPolicy {
         return 0.0;
     }
 
+    @Override
+    public long calculateTaxMinor(Product p, long subtotalMinor) {
+        if (applicableTo(p)) {
+            return Money.percentOf(subtotalMinor, vatBasisPoints, Money.DEFAULT_ROUNDING);
+        }
+        return 0L;
+    }
+
     @Override
     public boolean applicableTo(Product p) {
         return p instanceof DigitalProduct;
     }
+
+    @Override
+    public Applicability applicableToType(Class<? extends Product> type, Category category) {
+        return DigitalProduct.class.isAssignableFrom(type) ? Applicability.ALWAYS : Applicability.NEVER;
+    }
+
+    @Override
+    public double flatRate() {
+        return vatRate;
+    }
 }
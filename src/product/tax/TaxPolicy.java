@@ -1,5 +1,7 @@
 package product.tax;
 
+import category.Category;
+import product.Money;
 import product.Product;
 
 /**
@@ -7,6 +9,12 @@ import product.Product;
  * Different tax policies can be applied to different product types.
  */
 public interface TaxPolicy {
+    /**
+     * Answer of applicableToType: whether a policy applies to every product
+     * of a type and category, to none of them, or has to be asked per product.
+     */
+    enum Applicability { ALWAYS, NEVER, PER_PRODUCT }
+
     /**
      * Human-readable tax policy name.
      */
@@ -20,6 +28,15 @@ public interface TaxPolicy {
      */
     double calculateTax(Product p, double subtotal);
 
+    /**
+     * Same as calculateTax(), in Money minor units.
+     * The default converts through calculateTax(); built-in policies override
+     * it with integer arithmetic.
+     */
+    default long calculateTaxMinor(Product p, long subtotalMinor) {
+        return Money.ofMajor(calculateTax(p, Money.toMajor(subtotalMinor)));
+    }
+
     /**
      * Check if this tax policy applies to the given product.
      * @param p the product
@@ -28,4 +45,27 @@ public interface TaxPolicy {
     default boolean applicableTo(Product p) {
         return true;
     }
+
+    /**
+     * Type-level version of applicableTo, used by TaxResolver to precompute
+     * which policy applies to each product type and category.
+     * ALWAYS and NEVER must agree with applicableTo(p) for every product of
+     * that type and category. The default, PER_PRODUCT, makes TaxResolver call
+     * applicableTo(p) on every line, which is always correct.
+     * @param type Product, PhysicalProduct or DigitalProduct
+     * @param category the category, or null for products without one
+     */
+    default Applicability applicableToType(Class<? extends Product> type, Category category) {
+        return Applicability.PER_PRODUCT;
+    }
+
+    /**
+     * The rate if this policy is a plain percentage of the subtotal
+     * (calculateTax(p, s) == s * flatRate() wherever it applies), otherwise NaN.
+     * Lets TaxResolver replace the interface call with a multiply.
+     * @return the flat rate, e.g. 0.12 for 12%, or NaN
+     */
+    default double flatRate() {
+        return Double.NaN;
+    }
 }
@@ -0,0 +1,167 @@
+package product.tax;
+
+import category.Category;
+import product.DigitalProduct;
+import product.PhysicalProduct;
+import product.Product;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Precomputed tax dispatch: for every product type (plain, physical, digital)
+ * and category, the first policy in priority order that applies to it.
+ * Flat-rate policies are stored as their rate, so tax for a line costs a
+ * table lookup plus a multiply instead of applicableTo/calculateTax calls
+ * on every policy. Other policies (e.g. ProgressiveVat) are called directly.
+ *
+ * Policies that cannot answer for a whole type and category (applicableToType
+ * returns PER_PRODUCT, the default) stay in the cell as checks, and their
+ * applicableTo(p) is called for every line before the resolved policy is used.
+ * The "no category" column is filled up front; a category column is filled
+ * the first time a product of that category is taxed.
+ */
+public class TaxResolver {
+    private static final int PLAIN = 0;
+    private static final int PHYSICAL = 1;
+    private static final int DIGITAL = 2;
+    private static final List<Class<? extends Product>> TYPES =
+            List.of(Product.class, PhysicalProduct.class, DigitalProduct.class);
+
+    private static final TaxPolicy[] NO_CHECKS = new TaxPolicy[0];
+
+    /**
+     * Resolved entry. 'checks' are the per-product policies ranked above
+     * 'policy', tried in order with applicableTo. policy is null when no tax
+     * applies otherwise; rate is NaN when the policy must be called.
+     */
+    private record Cell(TaxPolicy[] checks, TaxPolicy policy, double rate) {}
+
+    private final TaxPolicy[] policies; // priority order
+
+    // [type][column], column 0 = no category, 1 + ordinal otherwise.
+    // Grown by copy; a null cell is filled on first use (filling is idempotent, so races are harmless).
+    private volatile Cell[][] cells;
+
+    /**
+     * @param policies candidate policies, highest priority first
+     */
+    public TaxResolver(List<TaxPolicy> policies) {
+        this.policies = policies.toArray(new TaxPolicy[0]);
+        Cell[][] initial = new Cell[TYPES.size()][Category.getCount() + 1];
+        for (int type = 0; type < TYPES.size(); type++) {
+            initial[type][0] = resolve(type, null);
+        }
+        this.cells = initial;
+    }
+
+    private Cell resolve(int type, Category category) {
+        List<TaxPolicy> checks = new ArrayList<>();
+        for (TaxPolicy policy : policies) {
+            TaxPolicy.Applicability applies = policy.applicableToType(TYPES.get(type), category);
+            if (applies == TaxPolicy.Applicability.ALWAYS) {
+                return new Cell(checks.toArray(NO_CHECKS), policy, policy.flatRate());
+            }
+            if (applies != TaxPolicy.Applicability.NEVER) {
+                checks.add(policy); // PER_PRODUCT, or no answer at all
+            }
+        }
+        return new Cell(checks.toArray(NO_CHECKS), null, 0.0);
+    }
+
+    // The first per-product check that accepts the product, or null
+    private static TaxPolicy checked(Cell cell, Product p) {
+        for (TaxPolicy policy : cell.checks()) {
+            if (policy.applicableTo(p)) {
+                return policy;
+            }
+        }
+        return null;
+    }
+
+    private static int typeOf(Product p) {
+        if (p instanceof PhysicalProduct) return PHYSICAL;
+        if (p instanceof DigitalProduct) return DIGITAL;
+        return PLAIN;
+    }
+
+    private Cell cellFor(Product p) {
+        Category category = p.getCategory();
+        int type = typeOf(p);
+        if (category == null) {
+            return cells[type][0];
+        }
+        int column = category.getOrdinal() + 1;
+        Cell[][] table = cells;
+        if (column < table[type].length) {
+            Cell cell = table[type][column];
+            if (cell != null) {
+                return cell;
+            }
+        } else {
+            table = grow(column);
+        }
+        Cell cell = resolve(type, category);
+        table[type][column] = cell;
+        return cell;
+    }
+
+    private synchronized Cell[][] grow(int column) {
+        Cell[][] table = cells;
+        if (column < table[0].length) {
+            return table;
+        }
+        int columns = Math.max(column + 1, Category.getCount() + 1);
+        Cell[][] grown = new Cell[TYPES.size()][];
+        for (int type = 0; type < TYPES.size(); type++) {
+            grown[type] = Arrays.copyOf(table[type], columns);
+        }
+        cells = grown;
+        return grown;
+    }
+
+    /**
+     * @return the policy that taxes this product, or null if none applies
+     */
+    public TaxPolicy resolve(Product p) {
+        Cell cell = cellFor(p);
+        TaxPolicy checked = checked(cell, p);
+        return checked != null ? checked : cell.policy();
+    }
+
+    public double calculateTax(Product p, double subtotal) {
+        Cell cell = cellFor(p);
+        TaxPolicy checked = checked(cell, p);
+        if (checked != null) {
+            return checked.calculateTax(p, subtotal);
+        }
+        double rate = cell.rate();
+        return rate == rate ? subtotal * rate : cell.policy().calculateTax(p, subtotal); // rate != rate means NaN
+    }
+
+    /**
+     * Tax for a whole batch of lines in one call.
+     * @return tax per line, index-aligned with the input
+     */
+    public double[] calculateTax(Product[] products, double[] subtotals) {
+        if (products.length != subtotals.length) {
+            throw new IllegalArgumentException("products and subtotals must have matching lengths");
+        }
+        double[] out = new double[products.length];
+        calculateTax(products, subtotals, out, products.length);
+        return out;
+    }
+
+    /**
+     * Writes the tax for the first 'n' lines into 'out'.
+     */
+    public void calculateTax(Product[] products, double[] subtotals, double[] out, int n) {
+        if (products.length < n || subtotals.length < n || out.length < n) {
+            throw new IllegalArgumentException("products, subtotals and out must hold at least " + n + " lines");
+        }
+        for (int i = 0; i < n; i++) {
+            out[i] = calculateTax(products[i], subtotals[i]);
+        }
+    }
+}
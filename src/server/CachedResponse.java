@@ -0,0 +1,88 @@
+package server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A GET response body kept pre-rendered, both plain and gzipped, together
+ * with its ETag. It is rendered again only after the version it was built
+ * from has moved on, so serving an unchanged catalog costs no serialization,
+ * and a client that already has it gets a 304 without a body.
+ */
+final class CachedResponse {
+    // Part of every ETag, so tags from before a restart (when versions start over) never match
+    private static final String BOOT_ID = Long.toString(System.currentTimeMillis(), 36);
+
+    private final LongSupplier version;
+    private final Supplier<byte[]> renderer;
+    private volatile Body body;
+
+    record Body(long version, byte[] json, byte[] gzip, String etag, String gzipEtag) {}
+
+    CachedResponse(LongSupplier version, Supplier<byte[]> renderer) {
+        this.version = version;
+        this.renderer = renderer;
+    }
+
+    /**
+     * @return the body for the current version, rendering it if it is out of date
+     */
+    Body get() {
+        long current = version.getAsLong();
+        Body b = body;
+        if (b != null && b.version() == current) {
+            return b;
+        }
+        synchronized (this) {
+            b = body;
+            if (b != null && b.version() == current) {
+                return b;
+            }
+            // Tagged with the version read before rendering: a change made meanwhile
+            // just means the next request renders again.
+            b = render(current);
+            body = b;
+            return b;
+        }
+    }
+
+    private Body render(long version) {
+        byte[] json = renderer.get();
+        String etag = "\"" + BOOT_ID + "-" + version + "\"";
+        String gzipEtag = "\"" + BOOT_ID + "-" + version + "-gz\"";
+        return new Body(version, json, gzip(json), etag, gzipEtag);
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // in-memory streams do not fail
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @return true if an If-None-Match header value lists the given ETag (or is "*")
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,111 @@
+package server;
+
+import category.Category;
+import product.DigitalProduct;
+import product.PhysicalProduct;
+import product.Product;
+import product.StockStatus;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Type-specialised JSON for the catalog: one method per product type and
+ * policy option, writing fields in a fixed order with the constant parts
+ * ("{\"id\":" etc.) as pre-encoded bytes. No reflection, no maps.
+ */
+final class CatalogJson {
+    private static final byte[] ID = JsonWriter.ascii("{\"id\":");
+    private static final byte[] NAME = JsonWriter.ascii(",\"name\":");
+    private static final byte[] DESCRIPTION = JsonWriter.ascii(",\"description\":");
+    private static final byte[] PRICE = JsonWriter.ascii(",\"price\":");
+    private static final byte[] QUANTITY = JsonWriter.ascii(",\"quantity\":");
+    private static final byte[] CATEGORY = JsonWriter.ascii(",\"category\":");
+    private static final byte[] STOCK_STATUS = JsonWriter.ascii(",\"stockStatus\":");
+    private static final byte[] TYPE_PHYSICAL = JsonWriter.ascii(",\"type\":\"physical\"");
+    private static final byte[] TYPE_DIGITAL = JsonWriter.ascii(",\"type\":\"digital\"");
+    private static final byte[] TYPE_PRODUCT = JsonWriter.ascii(",\"type\":\"product\"");
+    private static final byte[] WEIGHT_KG = JsonWriter.ascii(",\"weightKg\":");
+    private static final byte[] DOWNLOAD_SIZE_MB = JsonWriter.ascii(",\"downloadSizeMb\":");
+    private static final byte[] IMAGE = JsonWriter.ascii(",\"image\":");
+    private static final byte[][] STOCK_STATUS_VALUES = quotedNames(StockStatus.values());
+
+    private CatalogJson() {
+    }
+
+    private static byte[][] quotedNames(Enum<?>[] values) {
+        byte[][] names = new byte[values.length][];
+        for (Enum<?> value : values) {
+            names[value.ordinal()] = JsonWriter.ascii('"' + value.name() + '"');
+        }
+        return names;
+    }
+
+    static void writeProduct(JsonWriter w, Product p, String image) throws IOException {
+        if (p instanceof PhysicalProduct physical) {
+            writePhysical(w, physical, image);
+        } else if (p instanceof DigitalProduct digital) {
+            writeDigital(w, digital, image);
+        } else {
+            writeCommon(w, p);
+            w.raw(TYPE_PRODUCT);
+            writeImage(w, image);
+        }
+    }
+
+    static void writePhysical(JsonWriter w, PhysicalProduct p, String image) throws IOException {
+        writeCommon(w, p);
+        w.raw(TYPE_PHYSICAL);
+        w.raw(WEIGHT_KG).number(p.getWeightKg());
+        writeImage(w, image);
+    }
+
+    static void writeDigital(JsonWriter w, DigitalProduct p, String image) throws IOException {
+        writeCommon(w, p);
+        w.raw(TYPE_DIGITAL);
+        w.raw(DOWNLOAD_SIZE_MB).number(p.getDownloadSizeMb());
+        writeImage(w, image);
+    }
+
+    // Fields every product has; leaves the object open for the type-specific ones
+    private static void writeCommon(JsonWriter w, Product p) throws IOException {
+        Category category = p.getCategory();
+        w.raw(ID).string(p.getId());
+        w.raw(NAME).string(p.getName());
+        w.raw(DESCRIPTION).string(p.getDescription());
+        w.raw(PRICE).money(p.getPriceMinor());
+        w.raw(QUANTITY).number(p.getQuantity());
+        w.raw(CATEGORY).string(category != null ? category.getName() : null);
+        w.raw(STOCK_STATUS).raw(STOCK_STATUS_VALUES[p.getStockStatus().ordinal()]);
+    }
+
+    private static void writeImage(JsonWriter w, String image) throws IOException {
+        w.raw(IMAGE).string(image).raw('}');
+    }
+
+    /**
+     * A selectable promotion / tax / shipping option: id, name, then its attributes.
+     */
+    static void writeOption(JsonWriter w, ShopCatalog.Option<?> option) throws IOException {
+        w.raw(ID).string(option.id());
+        w.raw(NAME).string(option.name());
+        for (Map.Entry<String, Object> attribute : option.attributes().entrySet()) {
+            w.raw(',').string(attribute.getKey()).raw(':');
+            Object value = attribute.getValue();
+            if (value == null) {
+                w.nullValue();
+            } else if (value instanceof String s) {
+                w.string(s);
+            } else if (value instanceof Integer || value instanceof Long) {
+                w.number(((Number) value).longValue());
+            } else if (value instanceof Number n) {
+                w.number(n.doubleValue());
+            } else if (value instanceof Boolean b) {
+                w.bool(b);
+            } else {
+                throw new IllegalArgumentException("Unsupported attribute type: " + value.getClass().getName());
+            }
+        }
+        w.raw('}');
+    }
+}
@@ -0,0 +1,217 @@
+package server;
+
+import cart.Cart;
+import product.Product;
+import product.pricing.PricePolicy;
+import product.shipping.ShippingPolicy;
+import product.tax.TaxPolicy;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Prices a checkout request with the Java policies through a Cart, so the
+ * browser only displays what the server computed.
+ *
+ * Request:  {"items":[{"productId":"p1","quantity":2}], "promotionId":"...",
+ *            "taxPolicyId":"...", "shippingPolicyId":"..."}
+ * Response: the breakdown ShopAPI.checkout() returns in frontend/js/api.js,
+ *           plus "promotionId" of the promotion that was applied.
+ *
+ * promotionId "best" (the default) tries every promotion on the cart and keeps
+ * the one with the largest discount, all within the one request.
+ */
+public class CheckoutService {
+    public static final String BEST_PROMOTION = "best";
+
+    private static final int MAX_LINES = 1000;
+    private static final int MAX_QUANTITY = 1_000_000; // same cap as Product stock
+
+    private final ShopCatalog catalog;
+
+    /**
+     * Thrown by placeOrder when some product does not have enough stock.
+     */
+    public static class OutOfStockException extends IllegalStateException {
+        private static final long serialVersionUID = 1L;
+
+        // not serialized; the ids are also in the message
+        private final transient List<String> productIds;
+
+        OutOfStockException(List<String> productIds) {
+            super("Not enough stock for: " + String.join(", ", productIds));
+            this.productIds = List.copyOf(productIds);
+        }
+
+        /**
+         * @return the ids of the products that were short; empty after deserialization
+         */
+        public List<String> getProductIds() {
+            return productIds != null ? productIds : List.of();
+        }
+    }
+
+    private record PricedCart(Cart cart, ShopCatalog.Option<PricePolicy> promotion,
+                              ShopCatalog.Option<TaxPolicy> tax,
+                              ShopCatalog.Option<ShippingPolicy> shipping, double shippingCost) {}
+
+    public CheckoutService(ShopCatalog catalog) {
+        this.catalog = catalog;
+    }
+
+    /**
+     * Prices the cart without touching stock.
+     * @throws IllegalArgumentException if the request is malformed or names
+     *         an unknown product or policy
+     */
+    public Map<String, Object> quote(Map<String, Object> request) {
+        return breakdown(price(request));
+    }
+
+    /**
+     * Prices the cart and takes every line out of stock, all or nothing.
+     * @throws IllegalArgumentException if the request is malformed or names
+     *         an unknown product or policy
+     * @throws OutOfStockException if some line cannot be sold; stock is unchanged
+     * @throws UncheckedIOException if the sale could not be made durable; the
+     *         stock is put back
+     */
+    public Map<String, Object> placeOrder(Map<String, Object> request) {
+        PricedCart priced = price(request);
+        Cart cart = priced.cart();
+        catalog.requireDurableMutations();
+        if (!cart.trySellAll()) {
+            List<String> shortIds = new ArrayList<>();
+            for (int i = 0; i < cart.size(); i++) {
+                if (cart.getProduct(i).getQuantity() < cart.getQuantity(i)) {
+                    shortIds.add(cart.getProduct(i).getId());
+                }
+            }
+            throw new OutOfStockException(shortIds);
+        }
+        // Not PLACED until the stock change is in the mutation log
+        try {
+            catalog.syncMutations();
+        } catch (UncheckedIOException e) {
+            cart.restockAll();
+            throw e;
+        }
+        Map<String, Object> result = breakdown(priced);
+        result.put("status", "PLACED");
+        return result;
+    }
+
+    private PricedCart price(Map<String, Object> request) {
+        String promotionId = text(request, "promotionId", BEST_PROMOTION);
+        ShopCatalog.Option<TaxPolicy> tax = option(catalog.findTax(text(request, "taxPolicyId", "no-tax")), "tax policy");
+        ShopCatalog.Option<ShippingPolicy> shipping =
+                option(catalog.findShippingPolicy(text(request, "shippingPolicyId", "none")), "shipping policy");
+
+        // Lines are added unpriced by promotions; each promotion below is then one batch pass
+        Cart cart = new Cart(List.of(), tax.policy(), catalog.findTaxResolver(tax.id()));
+        addLines(cart, request.get("items"));
+
+        ShopCatalog.Option<PricePolicy> promotion;
+        if (promotionId.equals(BEST_PROMOTION)) {
+            promotion = bestPromotion(cart);
+        } else {
+            promotion = option(catalog.findPromotion(promotionId), "promotion");
+            setPromotion(cart, promotion);
+        }
+
+        double shippingCost = shipping.policy() != null
+                ? cart.quoteConsolidatedShipping(shipping.policy()).getTotal()
+                : 0.0;
+        return new PricedCart(cart, promotion, tax, shipping, shippingCost);
+    }
+
+    private void addLines(Cart cart, Object items) {
+        if (!(items instanceof List<?> lines) || lines.isEmpty()) {
+            throw new IllegalArgumentException("items must be a non-empty array");
+        }
+        if (lines.size() > MAX_LINES) {
+            throw new IllegalArgumentException("At most " + MAX_LINES + " lines per checkout");
+        }
+        for (Object item : lines) {
+            if (!(item instanceof Map<?, ?> line)) {
+                throw new IllegalArgumentException("Each item needs productId and quantity");
+            }
+            Product product = catalog.findProduct(String.valueOf(line.get("productId")));
+            if (product == null) {
+                throw new IllegalArgumentException("Unknown product: " + line.get("productId"));
+            }
+            if (!(line.get("quantity") instanceof Double q) || q != Math.rint(q) || q < 1 || q > MAX_QUANTITY) {
+                throw new IllegalArgumentException("Invalid quantity for product " + product.getId());
+            }
+            cart.add(product, q.intValue());
+        }
+    }
+
+    // Same choice the cart page used to make in the browser: the largest discount wins, ties keep the earlier one
+    private ShopCatalog.Option<PricePolicy> bestPromotion(Cart cart) {
+        ShopCatalog.Option<PricePolicy> best = null;
+        double bestDiscount = 0.0;
+        for (ShopCatalog.Option<PricePolicy> option : catalog.getPromotions()) {
+            setPromotion(cart, option);
+            double discount = cart.getDiscountTotal();
+            if (best == null || discount > bestDiscount) {
+                best = option;
+                bestDiscount = discount;
+            }
+        }
+        if (best == null) {
+            throw new IllegalStateException("No promotions configured");
+        }
+        setPromotion(cart, best);
+        return best;
+    }
+
+    // Line prices come from the catalog's quote cache, so trying every promotion stays cheap
+    private void setPromotion(Cart cart, ShopCatalog.Option<PricePolicy> option) {
+        cart.setPromotions(catalog.findPromotionRules(option.id()), catalog.getQuoteCache());
+    }
+
+    private static Map<String, Object> breakdown(PricedCart priced) {
+        Cart cart = priced.cart();
+        List<Object> lines = new ArrayList<>(cart.size());
+        for (int i = 0; i < cart.size(); i++) {
+            Map<String, Object> line = new LinkedHashMap<>();
+            line.put("productId", cart.getProduct(i).getId());
+            line.put("productName", cart.getProduct(i).getName());
+            line.put("quantity", cart.getQuantity(i));
+            line.put("basePrice", cart.getLineBaseTotal(i));
+            line.put("priceWithPromo", cart.getLineSubtotal(i));
+            line.put("discount", cart.getLineDiscount(i));
+            line.put("tax", cart.getLineTax(i));
+            lines.add(line);
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("itemBreakdown", lines);
+        result.put("itemsTotal", cart.getBaseTotal());
+        result.put("subtotal", cart.getSubtotal());
+        result.put("discountAmount", cart.getDiscountTotal());
+        result.put("promotionId", priced.promotion().id());
+        result.put("promotion", priced.promotion().name());
+        result.put("taxAmount", cart.getTaxTotal());
+        result.put("taxPolicy", priced.tax().name());
+        result.put("shippingCost", priced.shippingCost());
+        result.put("shippingPolicy", priced.shipping().name());
+        result.put("total", cart.getSubtotal() + cart.getTaxTotal() + priced.shippingCost());
+        return result;
+    }
+
+    private static String text(Map<String, Object> request, String key, String fallback) {
+        Object value = request.get(key);
+        return value == null ? fallback : String.valueOf(value);
+    }
+
+    private static <T> ShopCatalog.Option<T> option(ShopCatalog.Option<T> option, String what) {
+        if (option == null) {
+            throw new IllegalArgumentException("Unknown " + what);
+        }
+        return option;
+    }
+}
@@ -0,0 +1,244 @@
+package server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * JSON output straight into a byte buffer: strings are UTF-8 encoded char by
+ * char and numbers are written digit by digit, so no intermediate String or
+ * byte[] is created per value.
+ *
+ * With an OutputStream the buffer is flushed whenever it fills up, so memory
+ * stays flat however much is written; without one it grows and the result is
+ * taken with toByteArray(). The caller writes the separators (',' ':') and
+ * constant parts as raw ASCII, see CatalogJson.
+ */
+final class JsonWriter {
+    private static final int STREAM_BUFFER = 64 * 1024;
+    private static final int MEMORY_BUFFER = 4 * 1024;
+    private static final byte[] NULL = ascii("null");
+    private static final byte[] TRUE = ascii("true");
+    private static final byte[] FALSE = ascii("false");
+    private static final byte[] HEX = ascii("0123456789abcdef");
+    private static final long FRACTION_SCALE = 1_000_000; // doubles keep up to 6 decimals
+    private static final int FRACTION_DIGITS = 6;
+
+    private final OutputStream out; // null: collect in memory
+    private byte[] buf;
+    private int pos;
+
+    /** Collects in memory; see toByteArray(). */
+    JsonWriter() {
+        this.out = null;
+        this.buf = new byte[MEMORY_BUFFER];
+    }
+
+    /** Streams to 'out' through a fixed buffer. */
+    JsonWriter(OutputStream out) {
+        this.out = out;
+        this.buf = new byte[STREAM_BUFFER];
+    }
+
+    static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (pos + bytes <= buf.length) {
+            return;
+        }
+        if (out != null) {
+            flushBuffer();
+            if (bytes <= buf.length) {
+                return;
+            }
+        }
+        buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + bytes));
+    }
+
+    private void flushBuffer() throws IOException {
+        out.write(buf, 0, pos);
+        pos = 0;
+    }
+
+    /** Writes bytes that are already valid JSON, e.g. a field name with its quotes and colon. */
+    JsonWriter raw(byte[] bytes) throws IOException {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buf, pos, bytes.length);
+        pos += bytes.length;
+        return this;
+    }
+
+    JsonWriter raw(char asciiChar) throws IOException {
+        ensure(1);
+        buf[pos++] = (byte) asciiChar;
+        return this;
+    }
+
+    JsonWriter nullValue() throws IOException {
+        return raw(NULL);
+    }
+
+    JsonWriter bool(boolean value) throws IOException {
+        return raw(value ? TRUE : FALSE);
+    }
+
+    /** A quoted, escaped string, or null. */
+    JsonWriter string(String s) throws IOException {
+        if (s == null) {
+            return nullValue();
+        }
+        int length = s.length();
+        ensure(length + 2);
+        buf[pos++] = '"';
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                ensure(1);
+                buf[pos++] = (byte) c;
+            } else if (c < 0x80) {
+                escape(c);
+            } else if (c < 0x800) {
+                ensure(2);
+                buf[pos++] = (byte) (0xC0 | (c >> 6));
+                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                ensure(4);
+                buf[pos++] = (byte) (0xF0 | (cp >> 18));
+                buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buf[pos++] = (byte) (0x80 | (cp & 0x3F));
+            } else {
+                if (Character.isSurrogate(c)) {
+                    c = '\uFFFD'; // unpaired surrogate has no UTF-8 form
+                }
+                ensure(3);
+                buf[pos++] = (byte) (0xE0 | (c >> 12));
+                buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        ensure(1);
+        buf[pos++] = '"';
+        return this;
+    }
+
+    private void escape(char c) throws IOException {
+        ensure(6);
+        buf[pos++] = '\\';
+        switch (c) {
+            case '"' -> buf[pos++] = '"';
+            case '\\' -> buf[pos++] = '\\';
+            case '\n' -> buf[pos++] = 'n';
+            case '\r' -> buf[pos++] = 'r';
+            case '\t' -> buf[pos++] = 't';
+            default -> {
+                buf[pos++] = 'u';
+                buf[pos++] = '0';
+                buf[pos++] = '0';
+                buf[pos++] = HEX[c >> 4];
+                buf[pos++] = HEX[c & 0xF];
+            }
+        }
+    }
+
+    JsonWriter number(long value) throws IOException {
+        ensure(20);
+        if (value < 0) {
+            if (value == Long.MIN_VALUE) {
+                return raw(ascii(Long.toString(value)));
+            }
+            buf[pos++] = '-';
+            value = -value;
+        }
+        int start = pos;
+        do {
+            buf[pos++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        reverse(start, pos - 1);
+        return this;
+    }
+
+    /**
+     * Whole values without a fraction, others with up to six decimals
+     * (trailing zeros dropped); NaN and infinities as null.
+     */
+    JsonWriter number(double value) throws IOException {
+        if (!Double.isFinite(value)) {
+            return nullValue();
+        }
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return number((long) value);
+        }
+        double scaled = value * FRACTION_SCALE;
+        if (Math.abs(scaled) >= 1e18) {
+            return raw(ascii(Double.toString(value))); // too large for the fixed-point path
+        }
+        return fixed(Math.round(scaled), FRACTION_SCALE, FRACTION_DIGITS);
+    }
+
+    /** A Money amount in minor units, e.g. 123450 as 1234.5. */
+    JsonWriter money(long minor) throws IOException {
+        return fixed(minor, 100, 2);
+    }
+
+    private JsonWriter fixed(long scaled, long scale, int digits) throws IOException {
+        if (scaled < 0) {
+            if (scaled == Long.MIN_VALUE) {
+                return raw(ascii(Long.toString(scaled)));
+            }
+            raw('-');
+            scaled = -scaled;
+        }
+        number(scaled / scale);
+        long fraction = scaled % scale;
+        if (fraction == 0) {
+            return this;
+        }
+        while (fraction % 10 == 0) {
+            fraction /= 10;
+            digits--;
+        }
+        ensure(digits + 1);
+        buf[pos++] = '.';
+        for (int i = pos + digits - 1; i >= pos; i--) {
+            buf[i] = (byte) ('0' + fraction % 10);
+            fraction /= 10;
+        }
+        pos += digits;
+        return this;
+    }
+
+    private void reverse(int from, int to) {
+        while (from < to) {
+            byte t = buf[from];
+            buf[from++] = buf[to];
+            buf[to--] = t;
+        }
+    }
+
+    /** Pushes buffered bytes to the stream (no-op in memory mode). */
+    void flush() throws IOException {
+        if (out != null) {
+            flushBuffer();
+            out.flush();
+        }
+    }
+
+    /** The bytes written so far, in memory mode. */
+    byte[] toByteArray() {
+        if (out != null) {
+            throw new IllegalStateException("Writer streams to an OutputStream");
+        }
+        return Arrays.copyOf(buf, pos);
+    }
+
+    /** Empties the buffer so the writer (and its buffer) can be reused. */
+    void reset() {
+        pos = 0;
+    }
+}
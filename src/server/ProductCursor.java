@@ -0,0 +1,47 @@
+package server;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * Opaque position in the product listing for cursor pagination.
+ * Encodes the creation sequence number of the last product a page returned
+ * (see ProductRegistry.getAllAfter), behind a format byte, as URL-safe base64.
+ * Clients are only meant to pass it back, not to read it.
+ */
+final class ProductCursor {
+    private static final byte FORMAT = 1;
+    private static final int BYTES = 1 + Long.BYTES;
+
+    private ProductCursor() {
+    }
+
+    static String encode(long afterSeq) {
+        byte[] bytes = ByteBuffer.allocate(BYTES).put(FORMAT).putLong(afterSeq).array();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * @return the sequence number to continue after; 0 for a null or empty cursor
+     * @throws IllegalArgumentException if the cursor was not made by encode()
+     */
+    static long decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0;
+        }
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        if (bytes.length != BYTES || bytes[0] != FORMAT) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        long seq = ByteBuffer.wrap(bytes, 1, Long.BYTES).getLong();
+        if (seq < 0) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        return seq;
+    }
+}
@@ -0,0 +1,721 @@
+package server;
+
+import category.Category;
+import product.CatalogSnapshot;
+import product.DigitalProduct;
+import product.PhysicalProduct;
+import product.Product;
+import product.ProductListener;
+import product.StockStatus;
+import product.persistence.MutationLog;
+import product.search.Filter;
+import product.search.FilterIndex;
+import product.search.SearchIndex;
+import product.pricing.BogoHalfPromotion;
+import product.pricing.BuyThreePayForTwo;
+import product.pricing.FixedPromotion;
+import product.pricing.PercentagePromotion;
+import product.pricing.PolicySet;
+import product.pricing.PricePolicy;
+import product.pricing.PriceQuoteCache;
+import product.shipping.FlatRateShippingPolicy;
+import product.shipping.FreeOverThresholdShippingPolicy;
+import product.shipping.ShippingPolicy;
+import product.tax.FlatVat;
+import product.tax.NoTax;
+import product.tax.ProgressiveVat;
+import product.tax.ReducedDigitalVat;
+import product.tax.TaxPolicy;
+import product.tax.TaxResolver;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * What the API serves: the products (held by Product.registry()) plus the
+ * promotions, tax and shipping policies the frontend can choose from, each
+ * under a stable id. Images are presentation data, so they live here rather
+ * than on Product.
+ *
+ * Two counters version what the API renders: getProductVersion() moves on
+ * every product change (via a ProductListener), getPolicyVersion() whenever
+ * a policy option is added. Cached responses compare against them.
+ *
+ * Product search goes through a SearchIndex and filtering through a
+ * FilterIndex, both following the registry.
+ *
+ * With openMutationLog() stock and price changes are kept in a MutationLog
+ * and survive a restart. writeSnapshot() saves the whole catalog, and
+ * fromSnapshot() serves it again right after startup: products are built as
+ * they are requested and the indexes are filled in the background
+ * (isIndexed() tells when they are complete).
+ *
+ * A catalog is created by seeded() or fromSnapshot() and follows the
+ * registry until close() removes its listeners.
+ */
+public class ShopCatalog implements Closeable {
+
+    /**
+     * A selectable policy. 'attributes' are extra fields for the frontend
+     * (rate, cost, threshold...); 'policy' may be null for "none".
+     */
+    public record Option<T>(String id, String name, T policy, Map<String, Object> attributes) {}
+
+    private static final int QUOTE_CACHE_ENTRIES = 1 << 16; // (product, qty, promotion) line prices
+
+    // Option maps are copied on write, so requests can read them without locking
+    private volatile Map<String, Option<PricePolicy>> promotions = Map.of();
+    private volatile Map<String, PolicySet> promotionRules = Map.of(); // one per promotion option, keys the quote cache
+    private volatile Map<String, Option<TaxPolicy>> taxes = Map.of();
+    private volatile Map<String, TaxResolver> taxResolvers = Map.of(); // one per tax option, shared by carts
+    private volatile Map<String, Option<ShippingPolicy>> shippingPolicies = Map.of();
+    private final Map<Product, String> images = new ConcurrentHashMap<>();
+    private final PriceQuoteCache quotes = new PriceQuoteCache(QUOTE_CACHE_ENTRIES);
+
+    private final AtomicLong productVersion = new AtomicLong();
+    private final AtomicLong policyVersion = new AtomicLong();
+    private final SearchIndex searchIndex;
+    private final FilterIndex filterIndex;
+    private final ProductListener versionListener;
+    private volatile MutationLog mutationLog;
+    private volatile CatalogSnapshot snapshot;
+    private volatile boolean indexed;
+
+    // With 'deferIndexing' the indexes only follow changes until indexExisting() runs
+    private ShopCatalog(boolean deferIndexing) {
+        this.searchIndex = new SearchIndex();
+        this.filterIndex = new FilterIndex();
+        // Listen first, as in SearchIndex.attach: indexing a product twice is harmless
+        Product.registry().addListener(searchIndex);
+        Product.registry().addListener(filterIndex);
+        this.versionListener = new ProductListener() {
+            @Override
+            public void productRegistered(Product p) {
+                productVersion.incrementAndGet();
+            }
+
+            @Override
+            public void priceChanged(Product p, double oldPrice, double newPrice) {
+                productVersion.incrementAndGet();
+            }
+
+            @Override
+            public void quantityChanged(Product p, int oldQuantity, int newQuantity) {
+                productVersion.incrementAndGet();
+            }
+
+            @Override
+            public void detailsChanged(Product p) {
+                productVersion.incrementAndGet();
+            }
+
+            @Override
+            public void categoryChanged(Product p, Category oldCategory, Category newCategory) {
+                productVersion.incrementAndGet();
+            }
+        };
+        Product.registry().addListener(versionListener);
+        if (!deferIndexing) {
+            indexExisting();
+        }
+    }
+
+    // One pass over the catalog for both indexes; listing them also builds
+    // every restored product, which completes the categories' membership
+    private void indexExisting() {
+        for (Product p : Product.registry().getAll()) {
+            searchIndex.index(p);
+            filterIndex.index(p);
+        }
+        indexed = true;
+    }
+
+    /**
+     * @return false while a catalog restored from a snapshot is still
+     *         building its products and its search and filter indexes
+     */
+    public boolean isIndexed() {
+        return indexed;
+    }
+
+    public synchronized void addPromotion(String id, String name, PricePolicy policy, Map<String, Object> attributes) {
+        promotions = with(promotions, new Option<>(id, name, policy, attributes));
+        Map<String, PolicySet> rules = new LinkedHashMap<>(promotionRules);
+        rules.put(id, new PolicySet(policy == null ? List.of() : List.of(policy)));
+        promotionRules = Collections.unmodifiableMap(rules);
+        policyVersion.incrementAndGet();
+    }
+
+    public synchronized void addTax(String id, String name, TaxPolicy policy, Map<String, Object> attributes) {
+        taxes = with(taxes, new Option<>(id, name, policy, attributes));
+        Map<String, TaxResolver> resolvers = new LinkedHashMap<>(taxResolvers);
+        resolvers.put(id, new TaxResolver(policy == null ? List.of() : List.of(policy)));
+        taxResolvers = Collections.unmodifiableMap(resolvers);
+        policyVersion.incrementAndGet();
+    }
+
+    public synchronized void addShippingPolicy(String id, String name, ShippingPolicy policy, Map<String, Object> attributes) {
+        shippingPolicies = with(shippingPolicies, new Option<>(id, name, policy, attributes));
+        policyVersion.incrementAndGet();
+    }
+
+    private static <T> Map<String, Option<T>> with(Map<String, Option<T>> current, Option<T> option) {
+        Map<String, Option<T>> next = new LinkedHashMap<>(current);
+        next.put(option.id(), option);
+        return Collections.unmodifiableMap(next);
+    }
+
+    public void setImage(Product product, String image) {
+        images.put(product, image);
+        productVersion.incrementAndGet();
+    }
+
+    /**
+     * @return a number that changes whenever anything in the product list changes
+     */
+    public long getProductVersion() {
+        return productVersion.get();
+    }
+
+    /**
+     * @return a number that changes whenever a promotion, tax or shipping option is added
+     */
+    public long getPolicyVersion() {
+        return policyVersion.get();
+    }
+
+    public String getImage(Product product) {
+        String image = images.get(product);
+        CatalogSnapshot restored = snapshot;
+        return image != null || restored == null ? image : restored.extra(product);
+    }
+
+    public Option<PricePolicy> findPromotion(String id) { return promotions.get(id); }
+
+    /**
+     * @return the rules of the promotion option 'id' as a PolicySet for
+     *         getQuoteCache(), or null if there is no such option
+     */
+    public PolicySet findPromotionRules(String id) { return promotionRules.get(id); }
+
+    /**
+     * @return the line-price cache shared by every checkout
+     */
+    public PriceQuoteCache getQuoteCache() { return quotes; }
+
+    public Option<TaxPolicy> findTax(String id) { return taxes.get(id); }
+
+    /**
+     * @return the resolver for the tax option 'id', or null if there is none
+     */
+    public TaxResolver findTaxResolver(String id) { return taxResolvers.get(id); }
+
+    public Option<ShippingPolicy> findShippingPolicy(String id) { return shippingPolicies.get(id); }
+
+    public Collection<Option<PricePolicy>> getPromotions() { return promotions.values(); }
+
+    public Collection<Option<TaxPolicy>> getTaxes() { return taxes.values(); }
+
+    public Collection<Option<ShippingPolicy>> getShippingPolicies() { return shippingPolicies.values(); }
+
+    public Collection<Product> getProducts() {
+        return Product.registry().getAll();
+    }
+
+    public Product findProduct(String id) {
+        return Product.findById(id);
+    }
+
+    public SearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    public FilterIndex getFilterIndex() {
+        return filterIndex;
+    }
+
+    /**
+     * Replays the stock and price changes logged in 'file' onto the current
+     * products and logs every change from then on. Call once the products
+     * are loaded. Replayed changes update the indexes like any other change.
+     * After fromSnapshot() only the changes logged after the snapshot are replayed.
+     */
+    public synchronized MutationLog openMutationLog(Path file) throws IOException {
+        if (mutationLog != null) {
+            throw new IllegalStateException("Mutation log already open");
+        }
+        CatalogSnapshot restored = snapshot;
+        mutationLog = restored != null
+                ? MutationLog.open(file, Product.registry(), restored.getLogId(), restored.getLogOffset())
+                : MutationLog.open(file, Product.registry());
+        return mutationLog;
+    }
+
+    /**
+     * Fails fast when changes cannot be made durable: call before changing
+     * stock or prices. Does nothing without a mutation log.
+     * @throws UncheckedIOException if the mutation log has failed
+     */
+    public void requireDurableMutations() {
+        MutationLog log = mutationLog;
+        if (log != null && log.isFailed()) {
+            throw new UncheckedIOException(new IOException("Mutation log has failed; changes cannot be saved"));
+        }
+    }
+
+    /**
+     * Waits until the changes made so far are on disk; returns at once
+     * without a mutation log. Concurrent callers share one fsync.
+     * @throws UncheckedIOException if the log cannot be written
+     */
+    public void syncMutations() {
+        MutationLog log = mutationLog;
+        if (log == null) {
+            return;
+        }
+        try {
+            log.sync();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Saves every product with its category, shipping policy (by option id)
+     * and image, for fromSnapshot(). Best taken while the catalog is quiet:
+     * a product changing meanwhile may be saved before or after the change,
+     * and in the latter case the change is replayed onto it again.
+     * With a mutation log open, the log is synced first and the snapshot
+     * records its position, so a later openMutationLog() skips what is saved.
+     * @throws IllegalArgumentException if a product uses a shipping policy
+     *         that is not one of the options
+     */
+    public void writeSnapshot(Path file) throws IOException {
+        MutationLog log = mutationLog;
+        long logId = 0;
+        long logOffset = 0;
+        if (log != null) {
+            logOffset = log.getSyncedOffset(); // before the products are read
+            logId = log.getId();
+        }
+        Map<ShippingPolicy, String> policyIds = new IdentityHashMap<>();
+        for (Option<ShippingPolicy> option : shippingPolicies.values()) {
+            if (option.policy() != null) {
+                policyIds.putIfAbsent(option.policy(), option.id());
+            }
+        }
+        CatalogSnapshot.write(file, getProducts(), logId, logOffset, policyIds::get, this::getImage);
+    }
+
+    /**
+     * Flushes and closes the mutation log, if one is open.
+     */
+    public synchronized void closeMutationLog() throws IOException {
+        if (mutationLog != null) {
+            mutationLog.close();
+            mutationLog = null;
+        }
+    }
+
+    /**
+     * Stops following the registry (indexes and product version) and closes
+     * the mutation log. The products stay in the registry.
+     */
+    @Override
+    public void close() throws IOException {
+        Product.registry().removeListener(versionListener);
+        Product.registry().removeListener(filterIndex);
+        Product.registry().removeListener(searchIndex);
+        closeMutationLog();
+    }
+
+    /**
+     * Builds a filter from query parameters; values within a parameter are
+     * alternatives (comma-separated), the parameters must all hold:
+     *   category=guitars,vinyl  stockStatus=LOW,IN_STOCK  type=physical  minPrice=1000  maxPrice=30000
+     * A category name no product is filed under matches nothing.
+     * @return null if none of the parameters is present
+     * @throws IllegalArgumentException for an unknown stock status or type, or a bad price
+     */
+    public Filter parseFilter(Map<String, String> params) {
+        List<Filter> conditions = new ArrayList<>();
+        String categories = params.get("category");
+        if (categories != null) {
+            List<Filter> any = new ArrayList<>();
+            for (String name : categories.split(",")) {
+                for (Category category : filterIndex.getCategories()) {
+                    if (category.getName().equals(name)) {
+                        any.add(Filter.category(category));
+                    }
+                }
+            }
+            conditions.add(Filter.or(any.toArray(new Filter[0])));
+        }
+        String statuses = params.get("stockStatus");
+        if (statuses != null) {
+            List<Filter> any = new ArrayList<>();
+            for (String status : statuses.split(",")) {
+                any.add(Filter.stockStatus(stockStatus(status)));
+            }
+            conditions.add(Filter.or(any.toArray(new Filter[0])));
+        }
+        String types = params.get("type");
+        if (types != null) {
+            List<Filter> any = new ArrayList<>();
+            for (String type : types.split(",")) {
+                any.add(Filter.type(type));
+            }
+            conditions.add(Filter.or(any.toArray(new Filter[0])));
+        }
+        String min = params.get("minPrice");
+        String max = params.get("maxPrice");
+        if (min != null || max != null) {
+            conditions.add(Filter.price(price(min, Double.NEGATIVE_INFINITY), price(max, Double.POSITIVE_INFINITY)));
+        }
+        return conditions.isEmpty() ? null : Filter.and(conditions.toArray(new Filter[0]));
+    }
+
+    private static StockStatus stockStatus(String name) {
+        try {
+            return StockStatus.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown stock status: " + name);
+        }
+    }
+
+    private static double price(String value, double fallback) {
+        if (value == null || value.isEmpty()) {
+            return fallback;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid price: " + value);
+        }
+    }
+
+    // ----- JSON -----
+
+    private static final byte[] ITEMS = JsonWriter.ascii("{\"items\":[");
+    private static final byte[] NEXT_CURSOR = JsonWriter.ascii("],\"nextCursor\":");
+    private static final byte[] TOTAL = JsonWriter.ascii(",\"total\":");
+
+    /**
+     * Streams the whole product list as a JSON array, in creation order.
+     * Products are written as they are read, so memory stays flat.
+     */
+    public void writeProducts(OutputStream out) throws IOException {
+        JsonWriter w = new JsonWriter(out);
+        writeProducts(w);
+        w.flush();
+    }
+
+    private void writeProducts(JsonWriter w) throws IOException {
+        w.raw('[');
+        boolean first = true;
+        for (Product p : getProducts()) {
+            if (!first) w.raw(',');
+            first = false;
+            CatalogJson.writeProduct(w, p, getImage(p));
+        }
+        w.raw(']');
+    }
+
+    public byte[] productsJson() {
+        JsonWriter w = new JsonWriter();
+        try {
+            writeProducts(w);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // in memory, cannot happen
+        }
+        return w.toByteArray();
+    }
+
+    /**
+     * One page of the product list, in creation order:
+     * {"items":[...], "nextCursor":"..."} with nextCursor null on the last page.
+     * @param afterSeq where the previous page ended (ProductCursor), 0 for the first page
+     */
+    public byte[] productPageJson(long afterSeq, int limit) {
+        JsonWriter w = new JsonWriter();
+        try {
+            w.raw(ITEMS);
+            Iterator<Product> it = Product.registry().getAllAfter(afterSeq).iterator();
+            long lastSeq = afterSeq;
+            for (int n = 0; n < limit && it.hasNext(); n++) {
+                Product p = it.next();
+                if (n > 0) w.raw(',');
+                CatalogJson.writeProduct(w, p, getImage(p));
+                lastSeq = p.getSeq();
+            }
+            w.raw(NEXT_CURSOR);
+            if (it.hasNext()) {
+                w.string(ProductCursor.encode(lastSeq));
+            } else {
+                w.nullValue();
+            }
+            w.raw('}');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return w.toByteArray();
+    }
+
+    /**
+     * One page of the products matching 'filter', like productPageJson,
+     * plus "total": how many products match in all.
+     */
+    public byte[] filteredPageJson(Filter filter, long afterSeq, int limit) {
+        // One extra product tells whether there is a next page
+        List<Product> found = filterIndex.find(filter, afterSeq, limit + 1);
+        boolean more = found.size() > limit;
+        JsonWriter w = new JsonWriter();
+        try {
+            w.raw(ITEMS);
+            int n = Math.min(limit, found.size());
+            for (int i = 0; i < n; i++) {
+                if (i > 0) w.raw(',');
+                Product p = found.get(i);
+                CatalogJson.writeProduct(w, p, getImage(p));
+            }
+            w.raw(NEXT_CURSOR);
+            if (more) {
+                w.string(ProductCursor.encode(found.get(n - 1).getSeq()));
+            } else {
+                w.nullValue();
+            }
+            w.raw(TOTAL).number(filterIndex.count(filter));
+            w.raw('}');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return w.toByteArray();
+    }
+
+    /**
+     * Facet counts for the products matching 'filter' (null: all products):
+     * {"total":N, "category":{name:count...}, "stockStatus":{...}, "type":{...}},
+     * with products without a category under "none".
+     */
+    public byte[] facetsJson(Filter filter) {
+        FilterIndex.Facets facets = filterIndex.facets(filter);
+        Map<String, Integer> categories = new LinkedHashMap<>();
+        for (Map.Entry<Category, Integer> e : facets.categories().entrySet()) {
+            categories.merge(e.getKey() != null ? e.getKey().getName() : "none", e.getValue(), Integer::sum);
+        }
+        Map<String, Integer> statuses = new LinkedHashMap<>();
+        for (Map.Entry<StockStatus, Integer> e : facets.stockStatuses().entrySet()) {
+            statuses.put(e.getKey().name(), e.getValue());
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("total", facets.total());
+        result.put("category", categories);
+        result.put("stockStatus", statuses);
+        result.put("type", facets.types());
+        return Json.write(result).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Streams products as newline-delimited JSON, one object per line, in
+     * creation order, starting after 'afterSeq' (0 for all). Each product is
+     * written as it is read, so memory stays flat for any catalog size.
+     */
+    public void streamProducts(OutputStream out, long afterSeq) throws IOException {
+        JsonWriter w = new JsonWriter(out);
+        for (Product p : Product.registry().getAllAfter(afterSeq)) {
+            CatalogJson.writeProduct(w, p, getImage(p));
+            w.raw('\n');
+        }
+        w.flush();
+    }
+
+    /**
+     * Products matching the query (see SearchIndex.search) as a JSON array.
+     */
+    public byte[] searchJson(String query, int limit) {
+        List<Product> found = searchIndex.search(query, limit);
+        JsonWriter w = new JsonWriter();
+        try {
+            w.raw('[');
+            for (int i = 0; i < found.size(); i++) {
+                if (i > 0) w.raw(',');
+                Product p = found.get(i);
+                CatalogJson.writeProduct(w, p, getImage(p));
+            }
+            w.raw(']');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return w.toByteArray();
+    }
+
+    public byte[] productJson(Product p) {
+        JsonWriter w = new JsonWriter();
+        try {
+            CatalogJson.writeProduct(w, p, getImage(p));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return w.toByteArray();
+    }
+
+    public static <T> byte[] optionsJson(Collection<Option<T>> options) {
+        JsonWriter w = new JsonWriter();
+        try {
+            w.raw('[');
+            boolean first = true;
+            for (Option<T> option : options) {
+                if (!first) w.raw(',');
+                first = false;
+                CatalogJson.writeOption(w, option);
+            }
+            w.raw(']');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return w.toByteArray();
+    }
+
+    // ----- seed data -----
+
+    /**
+     * The shop's demo assortment and policies, matching what the frontend
+     * used to mock. Product ids are "p1".."p12" since ids need two characters.
+     */
+    public static ShopCatalog seeded() {
+        ShopCatalog c = new ShopCatalog(false);
+        c.addDefaultPolicies();
+        c.addDemoProducts();
+        return c;
+    }
+
+    /**
+     * A catalog with the seeded() policy options and the products of a
+     * snapshot written by writeSnapshot(). Returns as soon as the snapshot is
+     * mapped; the products and the search and filter indexes are built on a
+     * background thread, and the categories list every product once it is done.
+     * Must be called before any product is created.
+     */
+    public static ShopCatalog fromSnapshot(Path file) throws IOException {
+        ShopCatalog c = new ShopCatalog(true);
+        c.addDefaultPolicies();
+        c.snapshot = CatalogSnapshot.load(file, id -> {
+            Option<ShippingPolicy> option = c.findShippingPolicy(id);
+            return option != null ? option.policy() : null;
+        });
+        Thread.ofPlatform().name("catalog-indexer").daemon().start(c::indexExisting);
+        return c;
+    }
+
+    private void addDefaultPolicies() {
+        addPromotion("none", "Без скидки", null, Map.of("type", "none"));
+        addPromotion("percentage-15", "15% на всё", new PercentagePromotion(15),
+                attributes("type", "percentage", "value", 15));
+        addPromotion("fixed-5000", "Фикс. скидка 5000₸", new FixedPromotion(5000),
+                attributes("type", "fixed", "value", 5000));
+        addPromotion("bogo-half", "Второй товар -50%", new BogoHalfPromotion(), Map.of("type", "bogo-half"));
+        addPromotion("buy3-pay2", "3 по цене 2", new BuyThreePayForTwo(), Map.of("type", "buy3-pay2"));
+
+        addTax("no-tax", "Без налога", new NoTax(), Map.of("rate", 0));
+        addTax("flat-vat-12", "НДС 12%", new FlatVat(0.12), Map.of("rate", 0.12));
+        addTax("flat-vat-5", "НДС 5% (цифровые товары)", new ReducedDigitalVat(0.05),
+                attributes("rate", 0.05, "digitalOnly", true));
+        addTax("progressive", "Прогрессивный НДС", new ProgressiveVat(), Map.of("type", "progressive"));
+
+        ShippingPolicy standard = new FlatRateShippingPolicy(800);
+        addShippingPolicy("none", "Самовывоз (бесплатно)", null, Map.of("cost", 0));
+        addShippingPolicy("pigeon-standard", "Голубь почтовый (2-3 дня)", standard, Map.of("cost", 800));
+        addShippingPolicy("pigeon-express", "Экспресс-голубь (в тот же день)",
+                new FlatRateShippingPolicy(2500), Map.of("cost", 2500));
+        addShippingPolicy("pigeon-vip", "VIP голубь с GPS-трекером",
+                new FlatRateShippingPolicy(5000), Map.of("cost", 5000));
+        addShippingPolicy("leha-delivery", "Лёха принесёт (1-2 часа)",
+                new FlatRateShippingPolicy(1500), Map.of("cost", 1500));
+        addShippingPolicy("free-over-50k", "Бесплатный голубь при заказе > 50,000₸",
+                new FreeOverThresholdShippingPolicy(50000, 800), attributes("cost", 800, "threshold", 50000));
+    }
+
+    private void addDemoProducts() {
+        ShippingPolicy standard = findShippingPolicy("pigeon-standard").policy();
+
+        Category guitars = new Category(1, "guitars", "Гитары");
+        Category vinyl = new Category(2, "vinyl", "Винил и кассеты");
+        Category synths = new Category(3, "synths", "Синтезаторы");
+        Category merch = new Category(4, "merch", "Мерч");
+        Category tickets = new Category(5, "tickets", "Билеты");
+
+        physical("p1", "Гитара \"Аккорд\"", "Советская акустическая гитара. Та самая, на которой играл Цой.",
+                25000, 5, 3.5, guitars, standard,
+                "https://images.unsplash.com/photo-1510915361894-db8b60106cb1?w=400&h=300&fit=crop&auto=format&q=80");
+        digital("p2", "Винил \"КИНО - Группа Крови\"", "Легендарный альбом 1988 года. Переиздание на виниле.",
+                2500, 100, vinyl,
+                "https://images.unsplash.com/photo-1619983081563-430f63602796?w=400&h=300&fit=crop&auto=format&q=80");
+        physical("p3", "Синтезатор Yamaha DX7", "Синтезатор 80-х. На таком играли в группе \"Кино\".",
+                150000, 2, 14.5, synths, standard,
+                "https://images.unsplash.com/photo-1598488035139-bdbb2231ce04?w=400&h=300&fit=crop&auto=format&q=80");
+        physical("p4", "Футболка \"Перемен!\"", "Чёрная футболка с культовой надписью. 100% хлопок.",
+                1200, 50, 0.2, merch, standard,
+                "https://images.unsplash.com/photo-1521572163474-6864f9cf17ab?w=400&h=300&fit=crop&auto=format&q=80");
+        digital("p5", "Виниловая пластинка \"Звезда по имени Солнце\"", "Альбом 1989 года. Последний студийный альбом Цоя.",
+                3000, 30, vinyl,
+                "https://images.unsplash.com/photo-1603048588665-791ca8aea617?w=400&h=300&fit=crop&auto=format&q=80");
+        physical("p6", "Электрогитара Fender Stratocaster", "Легендарная модель. Такую использовал Юрий Каспарян.",
+                85000, 3, 3.6, guitars, standard,
+                "https://images.unsplash.com/photo-1564186763535-ebb21ef5277f?w=400&h=300&fit=crop&auto=format&q=80");
+        physical("p7", "Плакат \"Цой жив\"", "Постер с культовым граффити. A1 формат.",
+                500, 200, 0.1, merch, standard,
+                "https://images.unsplash.com/photo-1578662996442-48f60103fc96?w=400&h=300&fit=crop&auto=format&q=80");
+        digital("p8", "Кассета \"Начальник Камчатки\"", "Раритетная магнитофонная кассета 1984 года.",
+                5000, 5, vinyl,
+                "https://images.unsplash.com/photo-1594623930572-300a3011d9ae?w=400&h=300&fit=crop&auto=format&q=80");
+        digital("p9", "🎫 Билет на трибьют-концерт КИНО", "Алматы, Megapolis, 15 марта 2025. Трибьют группе \"Кино\".",
+                8000, 150, tickets,
+                "https://images.unsplash.com/photo-1501281668745-f7f57925c3b4?w=400&h=300&fit=crop&auto=format&q=80");
+        digital("p10", "🎫 VIP-билет на рок-фестиваль", "Фестиваль памяти Цоя, Алматы. Включает встречу с музыкантами.",
+                25000, 20, tickets,
+                "https://images.unsplash.com/photo-1492684223066-81342ee5ff30?w=400&h=300&fit=crop&auto=format&q=80");
+        digital("p11", "🎫 Онлайн-концерт \"Группа Крови\"", "Прямой эфир из Москвы. Полное исполнение альбома \"Группа Крови\".",
+                1500, 1000, tickets,
+                "https://images.unsplash.com/photo-1470229722913-7c0e2dbbafd3?w=400&h=300&fit=crop&auto=format&q=80");
+        physical("p12", "Лёха", "Легендарный Лёха. Эксклюзивная позиция, есть только у нас!",
+                999999, 1, 75, null, standard, "assets/images/Леха.jpg");
+    }
+
+    private void physical(String id, String name, String description, double price, int quantity,
+                          double weightKg, Category category, ShippingPolicy shipping, String image) {
+        PhysicalProduct p = new PhysicalProduct(id, name, description, price, quantity, weightKg, 0, 0, 0, shipping);
+        if (category != null) {
+            category.addProduct(p);
+        }
+        setImage(p, image);
+    }
+
+    private void digital(String id, String name, String description, double price, int quantity,
+                         Category category, String image) {
+        DigitalProduct p = new DigitalProduct(id, name, description, price, quantity, 0, null);
+        category.addProduct(p);
+        setImage(p, image);
+    }
+
+    // Map.of with insertion order kept, so JSON fields come out as listed
+    private static Map<String, Object> attributes(String k1, Object v1, String k2, Object v2) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put(k1, v1);
+        map.put(k2, v2);
+        return map;
+    }
+}
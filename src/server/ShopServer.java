@@ -0,0 +1,438 @@
+package server;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import product.Product;
+import product.persistence.MutationLog;
+import product.search.Filter;
+import product.search.SearchIndex;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * REST backend for frontend/js/api.js, on the JDK's built-in HttpServer.
+ *
+ *   GET  /api/products                       the whole list (cached, see below)
+ *   GET  /api/products?limit=N&cursor=C      one page: {"items":[...],"nextCursor":...}
+ *   GET  /api/products?format=ndjson         every product, one JSON object per line, streamed
+ *   GET  /api/products?category=..&stockStatus=..&type=..&minPrice=..&maxPrice=..
+ *                                            a page of matching products, plus "total"
+ *   GET  /api/facets?(same filters)          match counts per category, stock status and type
+ *   GET  /api/products/{id}
+ *   GET  /api/search?q=...&limit=N           products matching every word (the last one as a prefix)
+ *   GET  /api/search/suggest?q=...&limit=N   autocomplete: words starting with the last word of q
+ *   GET  /api/promotions
+ *   GET  /api/taxes
+ *   GET  /api/shipping-policies
+ *   POST /api/checkout/quote   prices a cart
+ *   POST /api/checkout         prices a cart and takes it out of stock (409 if short,
+ *                              503 if the mutation log cannot record the sale)
+ *
+ * Every request runs on its own virtual thread, so a slow client only parks
+ * a cheap virtual thread and there is no pool size to run out of.
+ *
+ * The product and policy lists are served from CachedResponses: pre-rendered
+ * (and pre-gzipped) bytes with an ETag, rebuilt only when the catalog changed.
+ *
+ * Run: java server.ShopServer [port [mutation-log-file [snapshot-file]]]
+ * With a log file, stock and price changes are replayed from it at startup
+ * and a checkout is only confirmed once its sale is in the log. Once the
+ * log has failed, checkouts are refused rather than taken without it.
+ * With a snapshot file the catalog is loaded from it (or, the first time,
+ * seeded and saved to it); search and filtering answer 503 until the
+ * indexes have been built in the background.
+ */
+public class ShopServer {
+    public static final int DEFAULT_PORT = 8080;
+    private static final int BACKLOG = 4096;
+    private static final int MAX_BODY_BYTES = 1 << 20;
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final int DEFAULT_SEARCH_RESULTS = 20;
+    private static final int DEFAULT_SUGGESTIONS = 10;
+    private static final int MAX_SUGGESTIONS = 50;
+
+    static {
+        // Send responses immediately instead of waiting on Nagle + delayed ACK (~40 ms per keep-alive request).
+        // Read once when the JDK server starts up, so it must be set before HttpServer.create.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final ShopCatalog catalog;
+    private final CheckoutService checkout;
+    private final CachedResponse productList;
+    private final HttpServer http;
+    private final ExecutorService executor;
+
+    public ShopServer(ShopCatalog catalog, int port) throws IOException {
+        this.catalog = catalog;
+        this.checkout = new CheckoutService(catalog);
+        this.productList = new CachedResponse(catalog::getProductVersion, catalog::productsJson);
+        this.http = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        http.setExecutor(executor);
+
+        http.createContext("/api/products", handler(this::products));
+        http.createContext("/api/promotions", handler(cached(new CachedResponse(catalog::getPolicyVersion,
+                () -> ShopCatalog.optionsJson(catalog.getPromotions())))));
+        http.createContext("/api/taxes", handler(cached(new CachedResponse(catalog::getPolicyVersion,
+                () -> ShopCatalog.optionsJson(catalog.getTaxes())))));
+        http.createContext("/api/shipping-policies", handler(cached(new CachedResponse(catalog::getPolicyVersion,
+                () -> ShopCatalog.optionsJson(catalog.getShippingPolicies())))));
+        http.createContext("/api/search", handler(this::search));
+        http.createContext("/api/facets", handler(exchange -> {
+            if (requireMethod(exchange, "GET") && requireIndexes(exchange)) {
+                send(exchange, 200, catalog.facetsJson(catalog.parseFilter(query(exchange))));
+            }
+        }));
+        http.createContext("/api/checkout", handler(this::checkout));
+    }
+
+    public void start() {
+        http.start();
+    }
+
+    /**
+     * Stops accepting connections, gives open exchanges up to 'delaySeconds' to finish.
+     */
+    public void stop(int delaySeconds) {
+        http.stop(delaySeconds);
+        executor.close();
+    }
+
+    public int getPort() {
+        return http.getAddress().getPort();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        Path snapshot = args.length > 2 ? Path.of(args[2]) : null;
+        ShopCatalog catalog;
+        if (snapshot != null && Files.exists(snapshot)) {
+            long start = System.nanoTime();
+            catalog = ShopCatalog.fromSnapshot(snapshot);
+            System.out.println("Loaded " + Product.registry().size() + " products from " + snapshot
+                    + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        } else {
+            catalog = ShopCatalog.seeded();
+            if (snapshot != null) {
+                // written before the log is opened, so the log holds the changes made after it
+                catalog.writeSnapshot(snapshot);
+            }
+        }
+        if (args.length > 1) {
+            MutationLog log = catalog.openMutationLog(Path.of(args[1]));
+            System.out.println("Replayed " + log.getReplayedCount() + " changes from " + args[1]
+                    + (log.getSkippedCount() > 0 ? " (" + log.getSkippedCount() + " skipped)" : ""));
+        }
+        ShopServer server = new ShopServer(catalog, port);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(0);
+            try {
+                catalog.close();
+            } catch (IOException e) {
+                System.err.println("Could not close the mutation log: " + e.getMessage());
+            }
+        }));
+        server.start();
+        System.out.println("Shop API listening on http://localhost:" + server.getPort() + "/api");
+    }
+
+    // ----- endpoints -----
+
+    private void products(HttpExchange exchange) throws IOException {
+        if (!requireMethod(exchange, "GET")) {
+            return;
+        }
+        String path = exchange.getRequestURI().getPath();
+        String rest = path.substring("/api/products".length());
+        if (rest.isEmpty() || rest.equals("/")) {
+            Map<String, String> query = query(exchange);
+            Filter filter = catalog.parseFilter(query);
+            if (filter != null) {
+                if (!requireIndexes(exchange)) {
+                    return;
+                }
+                int limit = limit(query.get("limit"), DEFAULT_PAGE_SIZE, MAX_PAGE_SIZE);
+                send(exchange, 200, catalog.filteredPageJson(filter, ProductCursor.decode(query.get("cursor")), limit));
+            } else if ("ndjson".equals(query.get("format"))) {
+                streamProducts(exchange, ProductCursor.decode(query.get("cursor")));
+            } else if (query.containsKey("limit") || query.containsKey("cursor")) {
+                int limit = limit(query.get("limit"), DEFAULT_PAGE_SIZE, MAX_PAGE_SIZE);
+                send(exchange, 200, catalog.productPageJson(ProductCursor.decode(query.get("cursor")), limit));
+            } else {
+                sendCached(exchange, productList.get());
+            }
+            return;
+        }
+        Product product = catalog.findProduct(rest.substring(1));
+        if (product == null) {
+            sendError(exchange, 404, "Product not found");
+            return;
+        }
+        send(exchange, 200, catalog.productJson(product));
+    }
+
+    // Chunked: the length is unknown up front and nothing is held beyond the writer's buffer
+    private void streamProducts(HttpExchange exchange, long afterSeq) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            catalog.streamProducts(out, afterSeq);
+        }
+    }
+
+    private void search(HttpExchange exchange) throws IOException {
+        if (!requireMethod(exchange, "GET") || !requireIndexes(exchange)) {
+            return;
+        }
+        String path = exchange.getRequestURI().getPath();
+        Map<String, String> query = query(exchange);
+        String text = query.getOrDefault("q", "");
+        if (path.equals("/api/search") || path.equals("/api/search/")) {
+            int limit = limit(query.get("limit"), DEFAULT_SEARCH_RESULTS, SearchIndex.MAX_RESULTS);
+            send(exchange, 200, catalog.searchJson(text, limit));
+        } else if (path.equals("/api/search/suggest")) {
+            int limit = limit(query.get("limit"), DEFAULT_SUGGESTIONS, MAX_SUGGESTIONS);
+            send(exchange, 200, Json.write(catalog.getSearchIndex().suggest(text, limit)));
+        } else {
+            sendError(exchange, 404, "Not found");
+        }
+    }
+
+    // The 'limit' query parameter: 'fallback' when absent, at most 'max'
+    private static int limit(String limit, int fallback, int max) {
+        if (limit == null) {
+            return fallback;
+        }
+        int size;
+        try {
+            size = Integer.parseInt(limit);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("limit must be a number");
+        }
+        if (size < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        return Math.min(size, max);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void checkout(HttpExchange exchange) throws IOException {
+        if (!requireMethod(exchange, "POST")) {
+            return;
+        }
+        String path = exchange.getRequestURI().getPath();
+        boolean quoteOnly = path.equals("/api/checkout/quote");
+        if (!quoteOnly && !path.equals("/api/checkout") && !path.equals("/api/checkout/")) {
+            sendError(exchange, 404, "Not found");
+            return;
+        }
+        String body = readBody(exchange);
+        if (body == null) {
+            sendError(exchange, 413, "Request body too large");
+            return;
+        }
+        if (!(Json.parse(body) instanceof Map<?, ?> request)) {
+            throw new IllegalArgumentException("Checkout request must be a JSON object");
+        }
+        Map<String, Object> order = (Map<String, Object>) request;
+        if (quoteOnly) {
+            send(exchange, 200, Json.write(checkout.quote(order)));
+            return;
+        }
+        try {
+            send(exchange, 200, Json.write(checkout.placeOrder(order)));
+        } catch (CheckoutService.OutOfStockException e) {
+            send(exchange, 409, Json.write(Map.of("error", e.getMessage(), "productIds", e.getProductIds())));
+        } catch (UncheckedIOException e) {
+            System.err.println("Checkout rejected: " + e.getCause().getMessage());
+            sendError(exchange, 503, "Orders cannot be saved right now");
+        }
+    }
+
+    // ----- plumbing -----
+
+    private interface Endpoint {
+        void handle(HttpExchange exchange) throws IOException;
+    }
+
+    private static Endpoint cached(CachedResponse response) {
+        return exchange -> {
+            if (requireMethod(exchange, "GET")) {
+                sendCached(exchange, response.get());
+            }
+        };
+    }
+
+    // CORS preflight, error mapping and closing the exchange, shared by every endpoint
+    private static HttpHandler handler(Endpoint endpoint) {
+        return exchange -> {
+            try {
+                addCorsHeaders(exchange.getResponseHeaders());
+                if (exchange.getRequestMethod().equals("OPTIONS")) {
+                    exchange.sendResponseHeaders(204, -1);
+                    return;
+                }
+                endpoint.handle(exchange);
+            } catch (IllegalArgumentException e) {
+                sendError(exchange, 400, e.getMessage());
+            } catch (IOException e) {
+                // client went away; nothing to answer
+            } catch (RuntimeException e) {
+                System.err.println("Error handling " + exchange.getRequestURI() + ": " + e);
+                sendError(exchange, 500, "Internal error");
+            } finally {
+                exchange.close();
+            }
+        };
+    }
+
+    private static void addCorsHeaders(Headers headers) {
+        headers.set("Access-Control-Allow-Origin", "*");
+        headers.set("Access-Control-Allow-Methods", "GET, POST, OPTIONS");
+        headers.set("Access-Control-Allow-Headers", "Content-Type");
+    }
+
+    // A catalog restored from a snapshot builds its indexes in the background
+    private boolean requireIndexes(HttpExchange exchange) throws IOException {
+        if (catalog.isIndexed()) {
+            return true;
+        }
+        exchange.getResponseHeaders().set("Retry-After", "5");
+        sendError(exchange, 503, "Catalog index is still being built");
+        return false;
+    }
+
+    private static boolean requireMethod(HttpExchange exchange, String method) throws IOException {
+        if (exchange.getRequestMethod().equals(method)) {
+            return true;
+        }
+        exchange.getResponseHeaders().set("Allow", method + ", OPTIONS");
+        sendError(exchange, 405, "Method not allowed");
+        return false;
+    }
+
+    // Query parameters, decoded; a repeated name keeps its first value
+    private static Map<String, String> query(HttpExchange exchange) {
+        String raw = exchange.getRequestURI().getRawQuery();
+        Map<String, String> params = new HashMap<>();
+        if (raw == null || raw.isEmpty()) {
+            return params;
+        }
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            params.putIfAbsent(name, value);
+        }
+        return params;
+    }
+
+    // null if the body exceeds MAX_BODY_BYTES
+    private static String readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (bytes.length > MAX_BODY_BYTES) {
+                return null;
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    static void send(HttpExchange exchange, int status, String json) throws IOException {
+        send(exchange, status, json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static void send(HttpExchange exchange, int status, byte[] bytes) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // 304 if the client's copy is current, otherwise the stored bytes (gzipped if accepted)
+    private static void sendCached(HttpExchange exchange, CachedResponse.Body body) throws IOException {
+        Headers request = exchange.getRequestHeaders();
+        boolean gzip = acceptsGzip(request.getFirst("Accept-Encoding"));
+        String etag = gzip ? body.gzipEtag() : body.etag();
+        Headers response = exchange.getResponseHeaders();
+        response.set("ETag", etag);
+        response.set("Cache-Control", "no-cache"); // may be stored, but revalidate with If-None-Match
+        response.set("Vary", "Accept-Encoding");
+        if (CachedResponse.matches(request.getFirst("If-None-Match"), etag)) {
+            exchange.sendResponseHeaders(304, -1);
+            return;
+        }
+        byte[] bytes = gzip ? body.gzip() : body.json();
+        response.set("Content-Type", "application/json; charset=utf-8");
+        if (gzip) {
+            response.set("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // gzip (or x-gzip) listed with a q above 0; otherwise "*" with a q above 0
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        double gzip = -1;
+        double any = -1;
+        for (String element : acceptEncoding.split(",")) {
+            String[] parts = element.split(";");
+            String coding = parts[0].trim();
+            if (coding.equalsIgnoreCase("gzip") || coding.equalsIgnoreCase("x-gzip")) {
+                gzip = Math.max(gzip, quality(parts));
+            } else if (coding.equals("*")) {
+                any = Math.max(any, quality(parts));
+            }
+        }
+        return gzip >= 0 ? gzip > 0 : any > 0;
+    }
+
+    // The q parameter of an Accept-Encoding element; 1 if absent, 0 if malformed
+    private static double quality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String param = parts[i].trim();
+            int eq = param.indexOf('=');
+            if (eq > 0 && param.substring(0, eq).trim().equalsIgnoreCase("q")) {
+                try {
+                    double q = Double.parseDouble(param.substring(eq + 1).trim());
+                    return q >= 0 && q <= 1 ? q : 0;
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) {
+        try {
+            send(exchange, status, Json.write(Map.of("error", message == null ? "" : message)));
+        } catch (IOException | IllegalStateException e) {
+            // headers already sent or client gone
+        }
+    }
+}